@@ -0,0 +1,62 @@
+package com.natali;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Rolling arrival rate of people per floor and direction. Every arrival adds 1 to the floor counter
+ * and counters decay exponentially, so an arrival weighs half as much after {@code halfLife} ms.
+ */
+public class ArrivalRateTracker {
+    private static final int MILLISECONDS_IN_MINUTE = 1000 * 60;
+
+    private final int minFloor;
+    private final double decayPerMillisecond;
+
+    private final double[] upCounters;
+    private final double[] downCounters;
+    private final long[] lastUpdates;
+
+    public ArrivalRateTracker(int minFloor, int maxFloor, long halfLife) {
+        checkArgument(maxFloor > minFloor, "");
+        checkArgument(halfLife > 0, "Half-life must be positive");
+        this.minFloor = minFloor;
+        decayPerMillisecond = Math.log(2) / halfLife;
+        upCounters = new double[maxFloor - minFloor + 1];
+        downCounters = new double[maxFloor - minFloor + 1];
+        lastUpdates = new long[maxFloor - minFloor + 1];
+    }
+
+    private void decay(int index, long now) {
+        double factor = Math.exp(-decayPerMillisecond * Math.max(0, now - lastUpdates[index]));
+        upCounters[index] *= factor;
+        downCounters[index] *= factor;
+        lastUpdates[index] = now;
+    }
+
+    public synchronized void onArrival(int floor, Direction direction, long now) {
+        int index = floor - minFloor;
+        decay(index, now);
+        if (direction == Direction.Down) {
+            downCounters[index] += 1;
+        } else {
+            upCounters[index] += 1;
+        }
+    }
+
+    /**
+     * @return people per minute, Idle direction means both directions
+     */
+    public synchronized double getRate(int floor, Direction direction, long now) {
+        int index = floor - minFloor;
+        decay(index, now);
+        double counter;
+        if (direction == Direction.Up) {
+            counter = upCounters[index];
+        } else if (direction == Direction.Down) {
+            counter = downCounters[index];
+        } else {
+            counter = upCounters[index] + downCounters[index];
+        }
+        return counter * decayPerMillisecond * MILLISECONDS_IN_MINUTE;
+    }
+}
@@ -0,0 +1,214 @@
+package com.natali;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Headless run of the simulation for a fixed simulated time. Arguments are key=value pairs: the benchmark keys
+ * (duration in simulated seconds, speedup, output) and any key of the properties file, which overrides the file
+ * (e.g. seed=42 trafficProfile=UpPeak elevatorsNumber=8). All times of the simulation are divided by the speedup,
+ * so the run takes duration / speedup seconds of wall time. The result is printed and written to the output
+ * file as key=value lines, wait and ride times are in simulated milliseconds.
+ */
+@Slf4j
+public class Benchmark {
+    public static final String MODE = "benchmark";
+    private static final String ARGUMENT_SEPARATOR = "=";
+    private static final int DURATION = 600;
+    private static final double SPEEDUP = 10;
+    private static final String OUTPUT = "benchmark.properties";
+    private static final int MILLISECONDS_IN_SECOND = 1000;
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    //properties in milliseconds, they are divided by the speedup
+    private static final List<String> TIME_PROPERTIES = List.of("timeToPassAFloor", "timeToOpenTheDoor",
+            "timeToCloseTheDoor", "transferTimePerPerson", "minDwellTime", "maxDwellTime");
+    //properties which must stay positive after the division
+    private static final List<String> INTERVAL_PROPERTIES = List.of("personSpawnInterval", "arrivalRateHalfLife");
+
+    private Benchmark() {
+    }
+
+    static Map<String, String> parseArguments(String... args) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        String[] pair;
+        for (String arg : args) {
+            pair = arg.split(ARGUMENT_SEPARATOR, 2);
+            checkArgument(pair.length == 2, "Argument %s is not a key=value pair", arg);
+            arguments.put(pair[0].trim(), pair[1].trim());
+        }
+        return arguments;
+    }
+
+    //speeds the simulation up: a speedup times faster car takes a speedup times less time for the same trip
+    static void scaleTime(Properties prop, double speedup) {
+        long value;
+        for (String key : TIME_PROPERTIES) {
+            if (prop.containsKey(key)) {
+                value = Math.round(Long.parseLong(prop.getProperty(key)) / speedup);
+                prop.setProperty(key, String.valueOf(value));
+            }
+        }
+        for (String key : INTERVAL_PROPERTIES) {
+            if (prop.containsKey(key)) {
+                value = Math.max(1, Math.round(Long.parseLong(prop.getProperty(key)) / speedup));
+                prop.setProperty(key, String.valueOf(value));
+            }
+        }
+        if (prop.containsKey("maxSpeed")) {
+            prop.setProperty("maxSpeed", String.valueOf(Double.parseDouble(prop.getProperty("maxSpeed")) * speedup));
+            prop.setProperty("acceleration", String.valueOf(
+                    Double.parseDouble(prop.getProperty("acceleration")) * Math.pow(speedup, 2)));
+            prop.setProperty("jerk", String.valueOf(
+                    Double.parseDouble(prop.getProperty("jerk")) * Math.pow(speedup, 3)));
+        }
+    }
+
+    //samples of the speeded up time must not get into the statistics of the simulation, arguments may turn them on
+    static void disableStatisticsFiles(Properties prop) {
+        prop.setProperty("statisticsFile", "");
+        prop.setProperty("statisticsStore", "");
+    }
+
+    //logging of every step would be measured instead of the simulation
+    static void muteLogging() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    private static List<MemoryPoolMXBean> getHeapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+    }
+
+    //bytes allocated by the live threads, -1 if the JVM does not count them
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : allocationBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private static void putPercentiles(Map<String, Object> result, String name, Histogram histogram,
+                                       double speedup) {
+        for (double percentile : PERCENTILES) {
+            result.put(String.format("%sP%d", name, (int) percentile),
+                    Math.round(histogram.getValueAtPercentile(percentile) * speedup / MILLISECONDS_IN_SECOND));
+        }
+        result.put(name + "Max", Math.round(histogram.getMax() * speedup / MILLISECONDS_IN_SECOND));
+    }
+
+    private static void writeResult(String fileName, Map<String, Object> result) throws IOException {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(fileName))) {
+            result.forEach((key, value) -> printWriter.printf("%s=%s%n", key, value));
+        }
+    }
+
+    /**
+     * @return the exit code of the process
+     */
+    public static int run(String propertiesFile, String... args) {
+        Map<String, String> arguments = parseArguments(args);
+        int duration = Integer.parseInt(arguments.getOrDefault("duration", String.valueOf(DURATION)));
+        double speedup = Double.parseDouble(arguments.getOrDefault("speedup", String.valueOf(SPEEDUP)));
+        String output = arguments.getOrDefault("output", OUTPUT);
+        checkArgument(duration > 0, "Duration must be positive");
+        checkArgument(speedup > 0, "Speedup must be positive");
+
+        EnvironmentCreator environmentCreator = new EnvironmentCreator();
+        Properties prop = environmentCreator.readProperties(propertiesFile);
+        if (Objects.isNull(prop)) {
+            System.err.printf("Impossible to read %s%n", propertiesFile);
+            return 1;
+        }
+        disableStatisticsFiles(prop);
+        arguments.forEach(prop::setProperty);
+        scaleTime(prop, speedup);
+        DispatchPolicyTable dispatchPolicyTable;
+        try {
+            dispatchPolicyTable = environmentCreator.readDispatchPolicyTable(prop);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("Impossible to read dispatch policy table: %s%n", e.getMessage());
+            return 1;
+        }
+        muteLogging();
+
+        List<MemoryPoolMXBean> heapPools = getHeapPools();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        Environment environment = environmentCreator.createFromProperties(prop,
+                Objects.isNull(dispatchPolicyTable) ? null : dispatchPolicyTable.scale(1 / speedup));
+        if (Objects.isNull(environment)) {
+            System.err.println("Impossible to create the environment");
+            return 1;
+        }
+        try {
+            Thread.sleep(Math.round(duration * MILLISECONDS_IN_SECOND / speedup));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long allocatedAfter = getAllocatedBytes();
+        long wallTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        environment.stop();
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+
+        TripStatistics tripStatistics = environment.getTripStatistics();
+        double wallSeconds = Math.max(wallTime, 1) / (double) MILLISECONDS_IN_SECOND;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seed", prop.getProperty("seed", "random"));
+        result.put("trafficProfile", prop.getProperty("trafficProfile", TrafficProfile.Uniform.name()));
+        result.put("elevatorsNumber", prop.getProperty("elevatorsNumber"));
+        result.put("duration", duration);
+        result.put("speedup", speedup);
+        result.put("wallTime", wallTime);
+        result.put("events", tripStatistics.getEventsNumber());
+        result.put("eventsPerSecond", Math.round(tripStatistics.getEventsNumber() / wallSeconds));
+        result.put("peakHeapBytes", peakHeap);
+        result.put("allocatedBytes", allocated);
+        result.put("allocationRate", allocated < 0 ? -1 : Math.round(allocated / wallSeconds));
+        result.put("appeared", tripStatistics.getAppeared().sum());
+        result.put("delivered", tripStatistics.getAlighted().sum());
+        result.put("undelivered", tripStatistics.getUndelivered());
+        putPercentiles(result, "wait", tripStatistics.getWaitTime(), speedup);
+        putPercentiles(result, "ride", tripStatistics.getRideTime(), speedup);
+
+        result.forEach((key, value) -> System.out.printf("%-16s %s%n", key, value));
+        try {
+            writeResult(output, result);
+        } catch (IOException e) {
+            log.error("Impossible to write benchmark result: {}", e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,193 @@
+package com.natali;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Applies the changes of a properties file to a running simulation. The file has the keys of
+ * elevators_environment.properties, only the changed groups of keys are applied: timings and capacity of the
+ * cars, the number of elevators of the zones, parking and the dispatch policy table. A change of any other key
+ * (e.g. floors or the spawn interval) needs a restart and is only logged. A group which cannot be applied
+ * keeps the previous values and is tried again on the next change of the file.
+ */
+@Slf4j
+public class ConfigurationWatcher implements Runnable, Closeable {
+    //an editor may write the file in several steps
+    private static final int SETTLE_TIME = 200;
+    private static final Set<String> SETTINGS_KEYS = Set.of("timeToOpenTheDoor", "timeToCloseTheDoor",
+            "timeToPassAFloor", "bearingCapacity", "transferTimePerPerson", "minDwellTime", "maxDwellTime",
+            "floorHeight", "maxSpeed", "acceleration", "jerk");
+    private static final Set<String> ELEVATORS_KEYS = Set.of("elevatorsNumber", "zones");
+    private static final Set<String> PARKING_KEYS = Set.of("parkingEnabled", "parkingFloors", "arrivalRateHalfLife");
+    private static final Set<String> DISPATCH_KEYS = Set.of("dispatchPolicyTable");
+    private static final Set<String> WATCHER_KEYS = Set.of("watchConfiguration");
+
+    private final Environment environment;
+    private final EnvironmentCreator environmentCreator;
+    private final Path file;
+    private final WatchService watchService;
+    //the properties the simulation runs with
+    private final Properties applied;
+
+    /**
+     * @param applied the properties the environment was created from
+     */
+    public ConfigurationWatcher(Environment environment, EnvironmentCreator environmentCreator, String fileName,
+                                Properties applied) throws IOException {
+        checkNotNull(environment);
+        checkNotNull(environmentCreator);
+        checkNotNull(fileName);
+        checkNotNull(applied);
+        this.environment = environment;
+        this.environmentCreator = environmentCreator;
+        file = Paths.get(fileName).toAbsolutePath();
+        this.applied = new Properties();
+        this.applied.putAll(applied);
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private static boolean isChanged(Properties prop, Properties oldProp, Set<String> keys) {
+        return keys.stream().anyMatch(key -> !Objects.equals(prop.getProperty(key), oldProp.getProperty(key)));
+    }
+
+    //the failed group keeps its old values
+    private void restore(Properties prop, Set<String> keys) {
+        for (String key : keys) {
+            if (applied.containsKey(key)) {
+                prop.setProperty(key, applied.getProperty(key));
+            } else {
+                prop.remove(key);
+            }
+        }
+    }
+
+    private void applyElevatorsNumber(Properties prop) {
+        List<Zone> zones = environmentCreator.readZones(prop);
+        List<Zone> currentZones = environment.getZones();
+        checkArgument(zones.size() == currentZones.size(), "The number of zones cannot be changed");
+        for (int i = 0; i < zones.size(); i++) {
+            checkArgument(zones.get(i).hasSameFloors(currentZones.get(i)), "Floors of the zone %s cannot be changed",
+                    i);
+        }
+        for (Zone zone : zones) {
+            environment.setElevatorsNumber(zone.getId(), zone.getElevatorsNumber());
+        }
+    }
+
+    private boolean apply(Properties prop, Set<String> keys, String name, Runnable change) {
+        if (!isChanged(prop, applied, keys)) {
+            return false;
+        }
+        try {
+            change.run();
+            log.info("{} are changed", name);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Impossible to change {}: {}", name, e.getMessage());
+            restore(prop, keys);
+            return false;
+        }
+    }
+
+    /**
+     * Applies the groups of keys which differ from the applied properties.
+     *
+     * @return true if anything was changed
+     */
+    public synchronized boolean apply(Properties newProp) {
+        checkNotNull(newProp);
+        Properties prop = new Properties();
+        prop.putAll(newProp);
+        boolean isApplied = apply(prop, SETTINGS_KEYS, "elevator settings",
+                () -> environment.setElevatorSettings(environmentCreator.readElevatorSettings(prop)));
+        isApplied |= apply(prop, ELEVATORS_KEYS, "numbers of elevators", () -> applyElevatorsNumber(prop));
+        isApplied |= apply(prop, PARKING_KEYS, "parking settings", () -> environment.setParkingPolicy(
+                environmentCreator.readParkingPolicy(prop, environment.getZones())));
+        isApplied |= apply(prop, DISPATCH_KEYS, "dispatch settings", () -> {
+            try {
+                environment.setDispatchPolicyTable(environmentCreator.readDispatchPolicyTable(prop));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        });
+        for (String key : prop.stringPropertyNames()) {
+            if (!SETTINGS_KEYS.contains(key) && !ELEVATORS_KEYS.contains(key) && !PARKING_KEYS.contains(key)
+                    && !DISPATCH_KEYS.contains(key) && !WATCHER_KEYS.contains(key)
+                    && !Objects.equals(prop.getProperty(key), applied.getProperty(key))) {
+                log.warn("{} is changed, the simulation must be restarted to apply it", key);
+                restore(prop, Set.of(key));
+            }
+        }
+        applied.clear();
+        applied.putAll(prop);
+        return isApplied;
+    }
+
+    private void reload() {
+        Properties prop = new Properties();
+        try (InputStream inputStream = new FileInputStream(file.toFile())) {
+            prop.load(inputStream);
+        } catch (IOException e) {
+            log.warn("Impossible to read {}: {}", file, e.getMessage());
+            return;
+        }
+        apply(prop);
+    }
+
+    @Override
+    public void run() {
+        log.info("Watching {}", file);
+        reload();
+        WatchKey key;
+        boolean isFileChanged;
+        while (true) {
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            isFileChanged = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (file.getFileName().equals(event.context())) {
+                    isFileChanged = true;
+                }
+            }
+            key.reset();
+            if (isFileChanged) {
+                try {
+                    Thread.sleep(SETTLE_TIME);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                reload();
+            }
+        }
+        log.info("Stopped watching {}", file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
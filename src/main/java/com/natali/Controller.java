@@ -1,161 +1,503 @@
-package com.natali;
-
-import lombok.extern.slf4j.Slf4j;
-
-import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
-
-import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
-import static java.lang.Math.abs;
-
-
-@Slf4j
-public class Controller {
-    private static final String NO_LIFT_FOUND = "List of elevators is empty";
-
-    private final List<Elevator> elevators;
-    private final Queue<StorageStructure> waitingQueue;
-    private final ThreadPoolExecutor threadPoolExecutor;
-
-    private final ReentrantLock lock;
-    private final Condition elevatorFree;
-
-    private volatile boolean isRunning;
-
-    private volatile boolean hasFreeElevator;
-
-    public Controller(List<Elevator> elevators, boolean launchNow) {
-        this.elevators = elevators;
-        lock = new ReentrantLock();
-        elevatorFree = lock.newCondition();
-        isRunning = false;
-        waitingQueue = new LinkedBlockingQueue<>();
-        threadPoolExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
-        checkNotNull(elevators);
-        checkArgument(!elevators.isEmpty(), NO_LIFT_FOUND);
-        if (launchNow) {
-            setRunning(true);
-        }
-    }
-
-    private void receiveEmptySignal() {
-        hasFreeElevator = true;
-        lock.lock();
-        elevatorFree.signal();
-        lock.unlock();
-
-    }
-
-    public void setRunning(boolean running) {
-        isRunning = running;
-        if (!isRunning) {
-            elevators.forEach(e -> e.setRunning(false));
-        } else {
-            log.info("Launching elevators");
-            elevators.forEach((elevator) ->
-            {
-                elevator.setNotifier(this::receiveEmptySignal);
-                elevator.setRunning(true);
-                new Thread(elevator).start();
-            });
-            log.info("The elevators are running");
-            new Thread(this::processWaitingQueue).start();
-        }
-    }
-
-
-    private boolean isElevatorSuitable(Elevator elevator, Direction direction, int startFloor) {
-        boolean isTargetLower;
-        boolean isDirectedByClients;
-        boolean isSameActualDirection;
-        isTargetLower = startFloor < elevator.getCurrentFloor();
-        isDirectedByClients = elevator.getAskedDirection() == elevator.getActualDirection();
-        isSameActualDirection = direction == elevator.getActualDirection();
-        return !elevator.isOverweight() && (elevator.getActualDirection() == Direction.Idle
-                || ((isDirectedByClients || direction == elevator.getAskedDirection()) &&
-                (!isDirectedByClients || isSameActualDirection) &&
-                (!isDirectedByClients || ((elevator.getActualDirection() != Direction.Down || isTargetLower)
-                        && (elevator.getActualDirection() != Direction.Up || !isTargetLower)))));
-    }
-
-    private Elevator getMostSuitableElevator(Direction direction, int startFloor) {
-
-        Elevator bestFittedElevator = null;
-        int curFloorDelta = Integer.MAX_VALUE;
-        int newFloorDelta;
-
-        for (Elevator elevator : elevators) {
-            if (!isElevatorSuitable(elevator, direction, startFloor)) {
-                continue;
-            }
-            newFloorDelta = abs(startFloor - elevator.getCurrentFloor());
-            if (newFloorDelta < curFloorDelta) {
-                bestFittedElevator = elevator;
-                curFloorDelta = newFloorDelta;
-            } else if (newFloorDelta == curFloorDelta && bestFittedElevator != null
-                    && bestFittedElevator.getCurrentFloor() < elevator.getCurrentFloor()) {
-                bestFittedElevator = elevator;
-            }
-        }
-        return bestFittedElevator;
-    }
-
-
-    private void processWaitingQueue() {
-        while (isRunning) {
-            lock.lock();
-            try {
-                while (waitingQueue.isEmpty() && !hasFreeElevator) {
-                    elevatorFree.await();
-                }
-            } catch (InterruptedException e) {
-                log.error("Thread {} was interrupted", Thread.currentThread().getId());
-            } finally {
-                lock.unlock();
-            }
-            StorageStructure person;
-            while (!waitingQueue.isEmpty()) {
-                person = waitingQueue.poll();
-                addClientParallel(person.getDirection(), person.getFloor());
-            }
-            hasFreeElevator = false;
-        }
-    }
-
-    public void addClientParallel(Direction direction, int startFloor) {
-        threadPoolExecutor.submit(() -> addClient(direction, startFloor));
-    }
-
-    public int addClient(Direction direction, int startFloor) {
-        Elevator elevator = null;
-        boolean isFound = false;
-        while (!isFound) {
-            elevator = getMostSuitableElevator(direction, startFloor);
-            if (Objects.isNull(elevator)) {
-                waitingQueue.add(new StorageStructure(startFloor, direction));
-                log.info("Person (floor: {}, direction: {}) is waiting", startFloor, direction);
-                return -1;
-            }
-            synchronized (elevator) {
-                if (!isElevatorSuitable(elevator, direction, startFloor)) {
-                    log.info("The elevator {} is no longer suitable for person (start: {}, direction: {}).",
-                            elevator.getId(), startFloor, direction);
-                } else {
-                    log.info("The elevator {} was called to the {} floor", elevator.getId(), startFloor);
-                    isFound = true;
-                    elevator.addFloor(startFloor, direction);
-                }
-            }
-        }
-        return elevator.getId();
-    }
-}
-
-
+package com.natali;
+
+import com.google.common.collect.Sets;
+import com.natali.command_interfaces.FloorDemand;
+import com.natali.events.EventBus;
+import com.natali.events.EventType;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+
+@Slf4j
+public class Controller {
+    private static final String NO_LIFT_FOUND = "List of elevators is empty";
+    static final int DISPATCH_THREADS = 4;
+    static final int DISPATCH_QUEUE_CAPACITY = 256;
+    private static final int DEFAULT_ZONE = 0;
+    private static final int SHUTDOWN_TIMEOUT = 1000;
+
+    //elevators are added and removed while the simulation runs, readers iterate snapshots
+    private final List<Elevator> elevators;
+    private final Map<Integer, List<Elevator>> zones;
+    private final Map<Integer, ElevatorIndex> indexes;
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final ScheduledThreadPoolExecutor delayedCallsExecutor;
+    @Getter
+    private final DispatchMetrics dispatchMetrics;
+
+    /* Waiting calls pipeline: callers -> waitingQueue -> dispatcher <- freeElevators <- elevators */
+    private final BlockingQueue<StorageStructure> waitingQueue;
+    private final BlockingQueue<Elevator> freeElevators;
+    private final Set<Elevator> signalledElevators;
+    //owned by the dispatcher thread only
+    private final Deque<StorageStructure> pendingCalls;
+    private Thread dispatcher;
+    private final Map<Elevator, Thread> elevatorThreads;
+    @Setter
+    private volatile ParkingPolicy parkingPolicy;
+    @Setter
+    private volatile FloorDemand floorDemand;
+    @Setter
+    private volatile EventBus eventBus;
+    //learned penalties added to the arrival times, null means the elevator which arrives first is called
+    @Setter
+    private volatile DispatchPolicyTable dispatchPolicyTable;
+
+    private volatile boolean isRunning;
+
+    public Controller(List<Elevator> elevators, boolean launchNow) {
+        this(elevators, launchNow, DISPATCH_THREADS, DISPATCH_QUEUE_CAPACITY);
+    }
+
+    public Controller(List<Elevator> elevators, boolean launchNow, int dispatchThreads, int dispatchQueueCapacity) {
+        checkNotNull(elevators);
+        checkArgument(!elevators.isEmpty(), NO_LIFT_FOUND);
+        checkArgument(dispatchThreads > 0, "Number of dispatch threads must be positive");
+        checkArgument(dispatchQueueCapacity > 0, "Dispatch queue capacity must be positive");
+        checkArgument(elevators.stream().map(Elevator::getId).distinct().count() == elevators.size(),
+                "Elevator ids must be unique");
+        this.elevators = new CopyOnWriteArrayList<>(elevators);
+        zones = new ConcurrentHashMap<>();
+        indexes = new ConcurrentHashMap<>();
+        elevators.forEach(this::register);
+        isRunning = false;
+        //the waiting calls are not bounded, a caller must never wait here: elevator threads are callers too
+        waitingQueue = new LinkedBlockingQueue<>();
+        freeElevators = new LinkedBlockingQueue<>();
+        signalledElevators = ConcurrentHashMap.newKeySet();
+        pendingCalls = new ArrayDeque<>();
+        elevatorThreads = new ConcurrentHashMap<>();
+        dispatchMetrics = new DispatchMetrics();
+        threadPoolExecutor = new ThreadPoolExecutor(dispatchThreads, dispatchThreads,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(dispatchQueueCapacity),
+                namedThreadFactory("dispatch"), this::onCallRejected);
+        //an elevator may still ask for a re-call while the controller is stopping
+        delayedCallsExecutor = new ScheduledThreadPoolExecutor(1, namedThreadFactory("delayed-call"),
+                (call, executor) -> log.warn("The controller is stopped, delayed call is dropped"));
+        if (launchNow) {
+            setRunning(true);
+        }
+    }
+
+    public List<Elevator> getElevators() {
+        return Collections.unmodifiableList(elevators);
+    }
+
+    private static ThreadFactory namedThreadFactory(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+    }
+
+    //a call of the dispatch pool, it keeps the call to be queued if the pool rejects it
+    private class DispatchTask implements Runnable {
+        private final int zoneId;
+        private final Direction direction;
+        private final int startFloor;
+        private final long callTime;
+
+        private DispatchTask(int zoneId, Direction direction, int startFloor, long callTime) {
+            this.zoneId = zoneId;
+            this.direction = direction;
+            this.startFloor = startFloor;
+            this.callTime = callTime;
+        }
+
+        @Override
+        public void run() {
+            addClient(zoneId, direction, startFloor, callTime);
+        }
+    }
+
+    //the dispatch queue is full: the call waits for a free elevator, the caller (an elevator, the people
+    //generator or the delayed calls thread) must not run it itself
+    private void onCallRejected(Runnable call, ThreadPoolExecutor executor) {
+        dispatchMetrics.onRejected();
+        if (executor.isShutdown()) {
+            log.warn("The controller is stopped, call is dropped");
+            return;
+        }
+        DispatchTask task = (DispatchTask) call;
+        dispatchMetrics.onQueued(0);
+        putToWaitingQueue(new StorageStructure(task.zoneId, task.startFloor, task.direction, task.callTime,
+                System.nanoTime()));
+        log.info("Person (zone: {}, floor: {}, direction: {}) is waiting, the dispatch queue is full",
+                task.zoneId, task.startFloor, task.direction);
+    }
+
+    private void shutdown(ThreadPoolExecutor executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+                executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            log.error("Thread {} was interrupted", Thread.currentThread().getId());
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void join(Thread thread) {
+        try {
+            thread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            log.error("Thread {} was interrupted", Thread.currentThread().getId());
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Thread {} did not stop in {} ms", thread.getName(), SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    private void register(Elevator elevator) {
+        zones.computeIfAbsent(elevator.getZoneId(), zoneId -> new CopyOnWriteArrayList<>()).add(elevator);
+        ElevatorIndex index = indexes.computeIfAbsent(elevator.getZoneId(), zoneId -> new ElevatorIndex());
+        //a retiring elevator is removed from the index once and must not come back with its next move
+        elevator.setPositionListener(() -> {
+            synchronized (index) {
+                if (!elevator.isRetiring()) {
+                    index.update(elevator);
+                }
+            }
+        });
+        elevator.setCallDispatcher((floor, direction) -> addClientParallel(elevator.getZoneId(), direction, floor));
+        index.update(elevator);
+    }
+
+    private void launch(Elevator elevator) {
+        elevator.setNotifier(() -> receiveEmptySignal(elevator));
+        elevator.setRunning(true);
+        Thread thread = new Thread(elevator, "elevator-" + elevator.getId());
+        elevatorThreads.put(elevator, thread);
+        thread.start();
+    }
+
+    /**
+     * Puts one more elevator into service, it takes calls at once. The id must be new.
+     */
+    public synchronized void addElevator(Elevator elevator) {
+        checkNotNull(elevator);
+        checkArgument(elevators.stream().noneMatch(e -> e.getId() == elevator.getId()),
+                "Elevator %s already exists", elevator.getId());
+        elevators.add(elevator);
+        register(elevator);
+        if (isRunning) {
+            launch(elevator);
+        }
+        log.info("The elevator {} was added to the zone {}", elevator.getId(), elevator.getZoneId());
+    }
+
+    /**
+     * Takes the elevator out of service: it gets no new calls, delivers its passengers and stops.
+     * The last elevator of a zone cannot be removed.
+     *
+     * @return the removed elevator
+     */
+    public synchronized Elevator removeElevator(int id) {
+        Elevator elevator = elevators.stream().filter(e -> e.getId() == id).findFirst().orElse(null);
+        checkArgument(!Objects.isNull(elevator), "No elevator %s", id);
+        List<Elevator> zone = zones.get(elevator.getZoneId());
+        checkState(zone.size() > 1, "The elevator %s is the last one of the zone %s", id, elevator.getZoneId());
+        //a caller which holds the monitor either has called the elevator already or sees it retiring
+        synchronized (elevator) {
+            elevator.retire();
+        }
+        ElevatorIndex index = indexes.get(elevator.getZoneId());
+        synchronized (index) {
+            index.remove(elevator);
+        }
+        zone.remove(elevator);
+        elevators.remove(elevator);
+        releaseHomeFloor(elevator);
+        log.info("The elevator {} was removed from the zone {}", id, elevator.getZoneId());
+        return elevator;
+    }
+
+    private void receiveEmptySignal(Elevator elevator) {
+        //an elevator which is already announced as free is not queued twice
+        if (signalledElevators.add(elevator)) {
+            freeElevators.add(elevator);
+        }
+    }
+
+    public synchronized void setRunning(boolean running) {
+        isRunning = running;
+        if (!isRunning) {
+            elevators.forEach(e -> e.setRunning(false));
+            //a moving elevator is woken up from its trip or stop
+            elevatorThreads.values().forEach(Thread::interrupt);
+            if (!Objects.isNull(dispatcher)) {
+                dispatcher.interrupt();
+            }
+            delayedCallsExecutor.shutdownNow();
+            shutdown(delayedCallsExecutor);
+            shutdown(threadPoolExecutor);
+            //the threads are over when the controller is stopped
+            elevatorThreads.values().forEach(this::join);
+            elevatorThreads.clear();
+            if (!Objects.isNull(dispatcher)) {
+                join(dispatcher);
+            }
+            log.info("Dispatch statistics:\n{}", dispatchMetrics);
+        } else {
+            log.info("Launching elevators");
+            elevators.forEach(this::launch);
+            log.info("The elevators are running");
+            dispatcher = new Thread(this::dispatchWaitingCalls, "waiting-calls-dispatcher");
+            dispatcher.start();
+        }
+    }
+
+
+    private int getQueuedWeight(int zoneId, int floor, Direction direction) {
+        FloorDemand demand = floorDemand;
+        return Objects.isNull(demand) ? 0 : demand.getQueuedWeight(zoneId, floor, direction);
+    }
+
+    /**
+     * Spare capacity of the elevators of the zone which are already called to the floor for the direction.
+     */
+    public int getAssignedCapacity(int zoneId, int floor, Direction direction) {
+        return zones.getOrDefault(zoneId, List.of()).stream()
+                .filter(elevator -> elevator.isCalledTo(floor, direction))
+                .mapToInt(Elevator::getSpareCapacity)
+                .sum();
+    }
+
+    //an elevator which cannot take even the first person of the floor queue is not sent there
+    private boolean hasRoomFor(Elevator elevator, Direction direction, int startFloor) {
+        FloorDemand demand = floorDemand;
+        return Objects.isNull(demand) || elevator.getSpareCapacity()
+                >= demand.getFirstPersonWeight(elevator.getZoneId(), startFloor, direction);
+    }
+
+    private boolean isElevatorSuitable(Elevator elevator, Direction direction, int startFloor) {
+        boolean isTargetLower;
+        boolean isDirectedByClients;
+        boolean isSameActualDirection;
+        isTargetLower = startFloor < elevator.getCurrentFloor();
+        isDirectedByClients = elevator.getAskedDirection() == elevator.getActualDirection();
+        isSameActualDirection = direction == elevator.getActualDirection();
+        return !elevator.isRetiring() && !elevator.isOverweight() && hasRoomFor(elevator, direction, startFloor)
+                && (elevator.getActualDirection() == Direction.Idle
+                || ((isDirectedByClients || direction == elevator.getAskedDirection()) &&
+                (!isDirectedByClients || isSameActualDirection) &&
+                (!isDirectedByClients || ((elevator.getActualDirection() != Direction.Down || isTargetLower)
+                        && (elevator.getActualDirection() != Direction.Up || !isTargetLower)))));
+    }
+
+    private Elevator getMostSuitableElevator(int zoneId, Direction direction, int startFloor,
+                                             Set<Elevator> excludedElevators) {
+        ElevatorIndex index = indexes.get(zoneId);
+        if (Objects.isNull(index)) {
+            return null;
+        }
+        DispatchPolicyTable table = dispatchPolicyTable;
+        return index.findFastest(startFloor, elevator -> !excludedElevators.contains(elevator)
+                        && isElevatorSuitable(elevator, direction, startFloor),
+                elevator -> elevator.getEstimatedArrivalTime(startFloor, direction)
+                        + (Objects.isNull(table) ? 0 : table.getPenalty(elevator, direction, startFloor)));
+    }
+
+
+    private void dispatchWaitingCalls() {
+        Elevator elevator;
+        while (isRunning) {
+            try {
+                elevator = freeElevators.take();
+            } catch (InterruptedException e) {
+                if (isRunning) {
+                    log.error("Thread {} was interrupted", Thread.currentThread().getId());
+                }
+                return;
+            }
+            signalledElevators.remove(elevator);
+            waitingQueue.drainTo(pendingCalls);
+            dispatchMetrics.onWaitingCalls(pendingCalls.size());
+            matchWaitingCalls(elevator);
+            park(elevator);
+        }
+    }
+
+    //an elevator which is still idle after the waiting calls were matched goes to its home floor
+    private void park(Elevator elevator) {
+        ParkingPolicy policy = parkingPolicy;
+        if (Objects.isNull(policy)) {
+            return;
+        }
+        Integer homeFloor;
+        synchronized (elevator) {
+            if (elevator.getActualDirection() != Direction.Idle || elevator.isRetiring()) {
+                return;
+            }
+            homeFloor = policy.chooseHomeFloor(elevator);
+            if (Objects.isNull(homeFloor)) {
+                return;
+            }
+            //an elevator which is already on its home floor only takes the direction to wait in
+            elevator.park(homeFloor, policy.getPreferredDirection(elevator.getZoneId(), homeFloor));
+        }
+        log.info("The elevator {} is parking on the {} floor", elevator.getId(), homeFloor);
+    }
+
+    private void releaseHomeFloor(Elevator elevator) {
+        ParkingPolicy policy = parkingPolicy;
+        if (!Objects.isNull(policy)) {
+            policy.release(elevator);
+        }
+    }
+
+    private void matchWaitingCalls(Elevator elevator) {
+        Iterator<StorageStructure> iterator = pendingCalls.iterator();
+        StorageStructure call;
+        long now;
+        while (iterator.hasNext()) {
+            call = iterator.next();
+            if (call.getZoneId() != elevator.getZoneId()) {
+                continue;
+            }
+            synchronized (elevator) {
+                if (!isElevatorSuitable(elevator, call.getDirection(), call.getFloor())) {
+                    continue;
+                }
+                dispatchMetrics.onElevatorCalled(
+                        elevator.getEstimatedArrivalTime(call.getFloor(), call.getDirection()));
+                elevator.addFloor(call.getFloor(), call.getDirection());
+            }
+            publishAssignment(elevator, call.getFloor(), call.getDirection());
+            releaseHomeFloor(elevator);
+            iterator.remove();
+            now = System.nanoTime();
+            dispatchMetrics.onLeftWaitingQueue(now - call.getQueueTime());
+            dispatchMetrics.onAssigned(0, now - call.getCallTime(), true, 1);
+            log.info("The elevator {} was called to the {} floor from the waiting queue",
+                    elevator.getId(), call.getFloor());
+        }
+    }
+
+    private void publishAssignment(Elevator elevator, int floor, Direction direction) {
+        EventBus bus = eventBus;
+        if (!Objects.isNull(bus)) {
+            bus.publish(EventType.Assignment, elevator.getZoneId(), elevator.getId(), floor, direction, 0);
+        }
+    }
+
+    private void putToWaitingQueue(StorageStructure call) {
+        waitingQueue.offer(call);
+        //an elevator could become idle before the call was queued, its signal must not be missed
+        zones.getOrDefault(call.getZoneId(), List.of()).stream()
+                .filter(e -> e.getActualDirection() == Direction.Idle)
+                .forEach(this::receiveEmptySignal);
+    }
+
+    public void addClientParallel(int zoneId, Direction direction, int startFloor) {
+        long callTime = System.nanoTime();
+        threadPoolExecutor.execute(new DispatchTask(zoneId, direction, startFloor, callTime));
+    }
+
+    public void addClientDelayed(int zoneId, Direction direction, int startFloor, int delay) {
+        delayedCallsExecutor.schedule(() -> addClientParallel(zoneId, direction, startFloor),
+                delay, TimeUnit.MILLISECONDS);
+    }
+
+    public int addClient(Direction direction, int startFloor) {
+        return addClient(DEFAULT_ZONE, direction, startFloor);
+    }
+
+    public int addClient(int zoneId, Direction direction, int startFloor) {
+        return addClient(zoneId, direction, startFloor, System.nanoTime());
+    }
+
+    private int addClient(int zoneId, Direction direction, int startFloor, long callTime) {
+        Set<Elevator> calledElevators = new HashSet<>();
+        Elevator firstElevator = null;
+        Elevator elevator;
+        int remainingWeight = getQueuedWeight(zoneId, startFloor, direction);
+        int retries = 0;
+        int arrivalTime;
+        long monitorRequestTime;
+        //the elevators already on the way take their share of the queue
+        Set<Elevator> assignedElevators = new HashSet<>();
+        for (Elevator assigned : zones.getOrDefault(zoneId, List.of())) {
+            if (assigned.isCalledTo(startFloor, direction)) {
+                assignedElevators.add(assigned);
+                remainingWeight -= assigned.getSpareCapacity();
+            }
+        }
+        while (assignedElevators.isEmpty() || remainingWeight > 0) {
+            elevator = getMostSuitableElevator(zoneId, direction, startFloor,
+                    Sets.union(calledElevators, assignedElevators));
+            if (Objects.isNull(elevator)) {
+                break;
+            }
+            monitorRequestTime = System.nanoTime();
+            synchronized (elevator) {
+                dispatchMetrics.onMonitorAcquired(System.nanoTime() - monitorRequestTime);
+                if (!isElevatorSuitable(elevator, direction, startFloor)) {
+                    retries++;
+                    dispatchMetrics.onRetry();
+                    log.info("The elevator {} is no longer suitable for person (start: {}, direction: {}).",
+                            elevator.getId(), startFloor, direction);
+                    continue;
+                }
+                arrivalTime = elevator.getEstimatedArrivalTime(startFloor, direction);
+                log.info("The elevator {} was called to the {} floor, arrival in {} ms",
+                        elevator.getId(), startFloor, arrivalTime);
+                elevator.addFloor(startFloor, direction);
+                dispatchMetrics.onElevatorCalled(arrivalTime);
+                remainingWeight -= elevator.getSpareCapacity();
+            }
+            publishAssignment(elevator, startFloor, direction);
+            releaseHomeFloor(elevator);
+            calledElevators.add(elevator);
+            if (Objects.isNull(firstElevator)) {
+                firstElevator = elevator;
+            }
+            //people who do not fit into the called elevators are taken by one more elevator
+            if (remainingWeight <= 0) {
+                break;
+            }
+        }
+        //people left by the called elevators are called again when the elevators leave the floor
+        if (Objects.isNull(firstElevator) && !assignedElevators.isEmpty()) {
+            dispatchMetrics.onAssigned(retries, System.nanoTime() - callTime, false, 0);
+            log.info("Person (zone: {}, floor: {}, direction: {}) is left to the called elevators",
+                    zoneId, startFloor, direction);
+            return assignedElevators.iterator().next().getId();
+        }
+        if (Objects.isNull(firstElevator)) {
+            dispatchMetrics.onQueued(retries);
+            putToWaitingQueue(new StorageStructure(zoneId, startFloor, direction, callTime, System.nanoTime()));
+            log.info("Person (zone: {}, floor: {}, direction: {}) is waiting", zoneId, startFloor, direction);
+            return -1;
+        }
+        dispatchMetrics.onAssigned(retries, System.nanoTime() - callTime, false, calledElevators.size());
+        return firstElevator.getId();
+    }
+}
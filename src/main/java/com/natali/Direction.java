@@ -1,7 +1,7 @@
-package com.natali;
-
-public enum Direction {
-    Up,
-    Down,
-    Idle
-}
+package com.natali;
+
+public enum Direction {
+    Up,
+    Down,
+    Idle
+}
@@ -0,0 +1,105 @@
+package com.natali;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the {@link Controller} dispatch path. All times are in microseconds.
+ */
+@Getter
+public class DispatchMetrics {
+    private final LongAdder assignedCalls;
+    private final LongAdder queuedCalls;
+    private final LongAdder retries;
+    private final LongAdder servedFromWaitingQueue;
+    private final LongAdder rejectedCalls;
+    private final LongAdder splitCalls;
+    private final LongAdder additionalElevators;
+    //the most calls the dispatcher held at once, the waiting queue is not bounded
+    private final LongAccumulator waitingCallsHighWater;
+
+    private final Histogram retriesPerCall;
+    private final Histogram monitorWaitTime;
+    private final Histogram timeToAssignment;
+    private final Histogram queueResidenceTime;
+    //estimated arrival time of the called elevator to the call floor, ms
+    private final Histogram estimatedArrivalTime;
+
+    public DispatchMetrics() {
+        assignedCalls = new LongAdder();
+        queuedCalls = new LongAdder();
+        retries = new LongAdder();
+        servedFromWaitingQueue = new LongAdder();
+        rejectedCalls = new LongAdder();
+        splitCalls = new LongAdder();
+        additionalElevators = new LongAdder();
+        waitingCallsHighWater = new LongAccumulator(Math::max, 0);
+        retriesPerCall = new Histogram();
+        monitorWaitTime = new Histogram();
+        timeToAssignment = new Histogram();
+        queueResidenceTime = new Histogram();
+        estimatedArrivalTime = new Histogram();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    void onMonitorAcquired(long waitNanos) {
+        monitorWaitTime.record(toMicros(waitNanos));
+    }
+
+    void onRetry() {
+        retries.increment();
+    }
+
+    void onQueued(int retriesNumber) {
+        queuedCalls.increment();
+        retriesPerCall.record(retriesNumber);
+    }
+
+    void onRejected() {
+        rejectedCalls.increment();
+    }
+
+    void onWaitingCalls(int waitingCalls) {
+        waitingCallsHighWater.accumulate(waitingCalls);
+    }
+
+    void onLeftWaitingQueue(long residenceNanos) {
+        queueResidenceTime.record(toMicros(residenceNanos));
+    }
+
+    void onElevatorCalled(int arrivalTime) {
+        estimatedArrivalTime.record(arrivalTime);
+    }
+
+    void onAssigned(int retriesNumber, long sinceCallNanos, boolean isFromWaitingQueue, int elevatorsNumber) {
+        assignedCalls.increment();
+        if (elevatorsNumber > 1) {
+            splitCalls.increment();
+            additionalElevators.add(elevatorsNumber - 1);
+        }
+        retriesPerCall.record(retriesNumber);
+        timeToAssignment.record(toMicros(sinceCallNanos));
+        if (isFromWaitingQueue) {
+            servedFromWaitingQueue.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("assigned: %d, queued: %d, retries: %d, served from waiting queue: %d, " +
+                        "rejected by dispatch pool: %d, split between elevators: %d (additional elevators: %d), " +
+                        "waiting calls high-water: %d%n" +
+                        "retries per call: %s%nmonitor wait, us: %s%ntime to assignment, us: %s%n" +
+                        "waiting queue residence, us: %s%nestimated arrival time, ms: %s",
+                assignedCalls.sum(), queuedCalls.sum(), retries.sum(), servedFromWaitingQueue.sum(),
+                rejectedCalls.sum(), splitCalls.sum(), additionalElevators.sum(), waitingCallsHighWater.get(),
+                retriesPerCall, monitorWaitTime, timeToAssignment, queueResidenceTime,
+                estimatedArrivalTime);
+    }
+}
@@ -0,0 +1,150 @@
+package com.natali;
+
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Learned preferences of the dispatcher: a penalty in ms added to the arrival time of an elevator, looked up
+ * by the state of the elevator relative to the call and by the load of the elevator. The table is trained
+ * offline by {@link DispatchPolicyTrainer} for a building and loaded at startup, a lookup is an array read.
+ * Penalties are not negative, so the arrival time stays the lower bound the index search relies on.
+ */
+public class DispatchPolicyTable {
+    public static final int LOAD_BUCKETS = 4;
+    private static final String VALUES_SEPARATOR = ",";
+
+    public enum Relation {
+        //the elevator stands
+        Idle,
+        //the elevator goes (or is parked to go) in the direction of the call and the call floor is ahead
+        OnTheWay,
+        //the elevator has to turn to take the call
+        Reversing
+    }
+
+    private static final Relation[] RELATIONS = Relation.values();
+
+    //relation - load bucket
+    private final int[] penalties;
+
+    public DispatchPolicyTable(int[] penalties) {
+        checkNotNull(penalties);
+        checkArgument(penalties.length == RELATIONS.length * LOAD_BUCKETS,
+                "Table must contain %s penalties", RELATIONS.length * LOAD_BUCKETS);
+        checkArgument(Arrays.stream(penalties).allMatch(penalty -> penalty >= 0), "Penalty must not be negative");
+        this.penalties = penalties.clone();
+    }
+
+    /**
+     * The family the trainer searches in: a penalty of the relation plus loadPenalty for every load bucket.
+     */
+    public static DispatchPolicyTable of(int idlePenalty, int reversingPenalty, int loadPenalty) {
+        int[] penalties = new int[RELATIONS.length * LOAD_BUCKETS];
+        int relationPenalty;
+        for (Relation relation : RELATIONS) {
+            relationPenalty = relation == Relation.Idle ? idlePenalty
+                    : relation == Relation.Reversing ? reversingPenalty : 0;
+            for (int bucket = 0; bucket < LOAD_BUCKETS; bucket++) {
+                penalties[relation.ordinal() * LOAD_BUCKETS + bucket] = relationPenalty + loadPenalty * bucket;
+            }
+        }
+        return new DispatchPolicyTable(penalties);
+    }
+
+    //penalties multiplied by the factor, e.g. for a simulation with speeded up time
+    public DispatchPolicyTable scale(double factor) {
+        checkArgument(factor > 0, "Factor must be positive");
+        return new DispatchPolicyTable(Arrays.stream(penalties)
+                .map(penalty -> (int) Math.round(penalty * factor))
+                .toArray());
+    }
+
+    /**
+     * The file has a line per relation with the penalties of the load buckets, e.g. "Reversing=0,500,1000,1500".
+     */
+    public static DispatchPolicyTable load(String fileName) throws IOException {
+        Properties prop = new Properties();
+        try (InputStream inputStream = new FileInputStream(fileName)) {
+            prop.load(inputStream);
+        }
+        int[] penalties = new int[RELATIONS.length * LOAD_BUCKETS];
+        String[] values;
+        for (Relation relation : RELATIONS) {
+            String line = prop.getProperty(relation.name());
+            checkArgument(!Objects.isNull(line), "No penalties of %s in %s", relation, fileName);
+            values = line.split(VALUES_SEPARATOR);
+            checkArgument(values.length == LOAD_BUCKETS, "%s must have %s penalties", relation, LOAD_BUCKETS);
+            for (int bucket = 0; bucket < LOAD_BUCKETS; bucket++) {
+                penalties[relation.ordinal() * LOAD_BUCKETS + bucket] = Integer.parseInt(values[bucket].trim());
+            }
+        }
+        return new DispatchPolicyTable(penalties);
+    }
+
+    public void save(String fileName, String comment) throws IOException {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(fileName))) {
+            printWriter.printf("# %s%n", comment);
+            printWriter.printf("# penalty in ms added to the arrival time, by load of the elevator: 0-25%%, 25-50%%, "
+                    + "50-75%%, 75-100%%%n");
+            for (Relation relation : RELATIONS) {
+                printWriter.printf("%s=%s%n", relation, getLine(relation));
+            }
+        }
+    }
+
+    private String getLine(Relation relation) {
+        StringBuilder line = new StringBuilder();
+        for (int bucket = 0; bucket < LOAD_BUCKETS; bucket++) {
+            if (bucket > 0) {
+                line.append(VALUES_SEPARATOR);
+            }
+            line.append(penalties[relation.ordinal() * LOAD_BUCKETS + bucket]);
+        }
+        return line.toString();
+    }
+
+    public static Relation getRelation(Elevator elevator, Direction direction, int floor) {
+        Direction actualDirection = elevator.getActualDirection();
+        if (actualDirection == Direction.Idle) {
+            Direction parkedDirection = elevator.getParkedDirection();
+            if (parkedDirection != direction) {
+                return Relation.Idle;
+            }
+            boolean isAheadOrHere = parkedDirection == Direction.Up
+                    ? floor >= elevator.getCurrentFloor() : floor <= elevator.getCurrentFloor();
+            return isAheadOrHere ? Relation.OnTheWay : Relation.Idle;
+        }
+        boolean isAhead = actualDirection == Direction.Up
+                ? floor > elevator.getCurrentFloor() : floor < elevator.getCurrentFloor();
+        return isAhead && actualDirection == direction && elevator.getAskedDirection() == direction
+                ? Relation.OnTheWay : Relation.Reversing;
+    }
+
+    public static int getLoadBucket(Elevator elevator) {
+        int load = elevator.getLoad();
+        int capacity = Math.max(load + elevator.getSpareCapacity(), 1);
+        return Math.min(LOAD_BUCKETS - 1, load * LOAD_BUCKETS / capacity);
+    }
+
+    public int getPenalty(Elevator elevator, Direction direction, int floor) {
+        return penalties[getRelation(elevator, direction, floor).ordinal() * LOAD_BUCKETS + getLoadBucket(elevator)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Relation relation : RELATIONS) {
+            result.append(relation).append('=').append(getLine(relation)).append(' ');
+        }
+        return result.toString().trim();
+    }
+}
@@ -0,0 +1,183 @@
+package com.natali;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Offline search of the {@link DispatchPolicyTable}: the same generated traffic (the seed is fixed) is replayed
+ * through the simulation with every table of the grid, the table with the least mean journey time is written
+ * to the output file. A person who is not delivered by the end of the run counts as travelling the whole run.
+ * Arguments are key=value pairs like for {@link Benchmark}: duration, speedup, output, grid (candidate
+ * penalties in simulated ms, comma separated), runs and any key of the properties file. The grid is tried for
+ * the penalty of idle elevators, of reversing elevators and for the penalty of a load bucket.
+ * The traffic is seeded, but the scheduling of the threads is not, so the same table gives another journey
+ * time from run to run. Every table is run several times and scored by the mean, and the current table
+ * (dispatchPolicyTable, no penalties if it is not set) is kept unless the best candidate beats it by more than
+ * the spread of the runs: the larger of the ranges of their journey times. A grid of n values takes
+ * (n^3 + 1) * runs runs of duration / speedup seconds.
+ */
+public class DispatchPolicyTrainer {
+    public static final String MODE = "train";
+    private static final int DURATION = 120;
+    private static final double SPEEDUP = 20;
+    private static final String OUTPUT = "dispatch_policy.properties";
+    private static final String GRID = "0,2000,5000";
+    private static final String SEED = "42";
+    private static final int RUNS = 3;
+    private static final String GRID_SEPARATOR = ",";
+    private static final int MICROSECONDS_IN_MILLISECOND = 1000;
+
+    private DispatchPolicyTrainer() {
+    }
+
+    private static int[] parseGrid(String description) {
+        String[] values = description.split(GRID_SEPARATOR);
+        int[] grid = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            grid[i] = Integer.parseInt(values[i].trim());
+            checkArgument(grid[i] >= 0, "Penalty must not be negative");
+        }
+        return grid;
+    }
+
+    //mean journey time of one run in simulated ms, -1 if the environment could not be created
+    private static long evaluateRun(EnvironmentCreator environmentCreator, Properties prop, DispatchPolicyTable table,
+                                 int duration, double speedup) {
+        Properties runProperties = new Properties();
+        runProperties.putAll(prop);
+        Environment environment = environmentCreator.createFromProperties(runProperties, table.scale(1 / speedup));
+        if (Objects.isNull(environment)) {
+            return -1;
+        }
+        long runTime = Math.round(TimeUnit.SECONDS.toMillis(duration) / speedup);
+        try {
+            Thread.sleep(runTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //the threads of the run are over before the next run starts and is timed
+        environment.stop();
+        TripStatistics tripStatistics = environment.getTripStatistics();
+        long appeared = tripStatistics.getAppeared().sum();
+        if (appeared == 0) {
+            return 0;
+        }
+        long journeyTime = tripStatistics.getWaitTime().getSum() + tripStatistics.getRideTime().getSum()
+                + tripStatistics.getUndelivered() * runTime * MICROSECONDS_IN_MILLISECOND;
+        return Math.round(journeyTime * speedup / MICROSECONDS_IN_MILLISECOND / appeared);
+    }
+
+    //mean journey times of the runs, null if the environment could not be created
+    private static long[] evaluate(EnvironmentCreator environmentCreator, Properties prop, DispatchPolicyTable table,
+                                   int duration, double speedup, int runs) {
+        long[] journeyTimes = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            journeyTimes[run] = evaluateRun(environmentCreator, prop, table, duration, speedup);
+            if (journeyTimes[run] < 0) {
+                return null;
+            }
+        }
+        return journeyTimes;
+    }
+
+    private static long getMean(long[] journeyTimes) {
+        return Math.round(Arrays.stream(journeyTimes).average().orElse(0));
+    }
+
+    private static long getRange(long[] journeyTimes) {
+        return Arrays.stream(journeyTimes).max().orElse(0) - Arrays.stream(journeyTimes).min().orElse(0);
+    }
+
+    /**
+     * @return the exit code of the process
+     */
+    public static int run(String propertiesFile, String... args) {
+        Map<String, String> arguments = Benchmark.parseArguments(args);
+        int duration = Integer.parseInt(arguments.getOrDefault("duration", String.valueOf(DURATION)));
+        double speedup = Double.parseDouble(arguments.getOrDefault("speedup", String.valueOf(SPEEDUP)));
+        String output = arguments.getOrDefault("output", OUTPUT);
+        int[] grid = parseGrid(arguments.getOrDefault("grid", GRID));
+        int runs = Integer.parseInt(arguments.getOrDefault("runs", String.valueOf(RUNS)));
+        checkArgument(duration > 0, "Duration must be positive");
+        checkArgument(speedup > 0, "Speedup must be positive");
+        checkArgument(runs > 0, "Number of runs must be positive");
+
+        EnvironmentCreator environmentCreator = new EnvironmentCreator();
+        Properties prop = environmentCreator.readProperties(propertiesFile);
+        if (Objects.isNull(prop)) {
+            System.err.printf("Impossible to read %s%n", propertiesFile);
+            return 1;
+        }
+        prop.setProperty("seed", SEED);
+        Benchmark.disableStatisticsFiles(prop);
+        arguments.forEach(prop::setProperty);
+        Benchmark.scaleTime(prop, speedup);
+        Benchmark.muteLogging();
+
+        DispatchPolicyTable current;
+        try {
+            current = environmentCreator.readDispatchPolicyTable(prop);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("Impossible to read dispatch policy table: %s%n", e.getMessage());
+            return 1;
+        }
+        if (Objects.isNull(current)) {
+            current = DispatchPolicyTable.of(0, 0, 0);
+        }
+        List<DispatchPolicyTable> candidates = new ArrayList<>();
+        for (int idlePenalty : grid) {
+            for (int reversingPenalty : grid) {
+                for (int loadPenalty : grid) {
+                    candidates.add(DispatchPolicyTable.of(idlePenalty, reversingPenalty, loadPenalty));
+                }
+            }
+        }
+        long[] currentJourneyTimes = evaluate(environmentCreator, prop, current, duration, speedup, runs);
+        if (Objects.isNull(currentJourneyTimes)) {
+            System.err.println("Impossible to create the environment");
+            return 1;
+        }
+        System.out.printf("%-8d +-%-6d current %s%n", getMean(currentJourneyTimes), getRange(currentJourneyTimes),
+                current);
+        DispatchPolicyTable best = null;
+        long[] bestJourneyTimes = null;
+        long[] journeyTimes;
+        for (DispatchPolicyTable candidate : candidates) {
+            journeyTimes = evaluate(environmentCreator, prop, candidate, duration, speedup, runs);
+            if (Objects.isNull(journeyTimes)) {
+                System.err.println("Impossible to create the environment");
+                return 1;
+            }
+            System.out.printf("%-8d +-%-6d %s%n", getMean(journeyTimes), getRange(journeyTimes), candidate);
+            if (Objects.isNull(bestJourneyTimes) || getMean(journeyTimes) < getMean(bestJourneyTimes)) {
+                best = candidate;
+                bestJourneyTimes = journeyTimes;
+            }
+        }
+        long spread = Math.max(getRange(currentJourneyTimes), getRange(bestJourneyTimes));
+        if (getMean(currentJourneyTimes) - getMean(bestJourneyTimes) <= spread) {
+            System.out.printf("no table beats the current one by more than the spread of %d ms%n", spread);
+            best = current;
+            bestJourneyTimes = currentJourneyTimes;
+        }
+        long bestJourneyTime = getMean(bestJourneyTimes);
+        System.out.printf("best: %d ms, %s%n", bestJourneyTime, best);
+        try {
+            best.save(output, String.format("mean journey time %d ms of %d runs, spread %d ms, seed %s, "
+                            + "traffic profile %s", bestJourneyTime, runs, spread, prop.getProperty("seed"),
+                    prop.getProperty("trafficProfile", TrafficProfile.Uniform.name())));
+        } catch (IOException e) {
+            System.err.printf("Impossible to write dispatch policy table: %s%n", e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
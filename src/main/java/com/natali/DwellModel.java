@@ -0,0 +1,36 @@
+package com.natali;
+
+import lombok.Value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Time the door stays open between opening and closing: every boarding or alighting person takes
+ * transferTimePerPerson ms, the result is clamped to [minDwellTime, maxDwellTime]. When nobody else
+ * waits on the floor the door closes right after the last person, without holding for minDwellTime.
+ */
+@Value
+public class DwellModel {
+    public static final DwellModel NONE = new DwellModel(0, 0, 0);
+
+    int transferTimePerPerson;
+    int minDwellTime;
+    int maxDwellTime;
+
+    public DwellModel(int transferTimePerPerson, int minDwellTime, int maxDwellTime) {
+        checkArgument(transferTimePerPerson >= 0);
+        checkArgument(minDwellTime >= 0);
+        checkArgument(maxDwellTime >= minDwellTime, "Max dwell time must not be less than min dwell time");
+        this.transferTimePerPerson = transferTimePerPerson;
+        this.minDwellTime = minDwellTime;
+        this.maxDwellTime = maxDwellTime;
+    }
+
+    public int getDwellTime(int alighted, int boarded, boolean isFloorQueueEmpty) {
+        int transferTime = transferTimePerPerson * (alighted + boarded);
+        if (!isFloorQueueEmpty) {
+            transferTime = Math.max(transferTime, minDwellTime);
+        }
+        return Math.min(transferTime, maxDwellTime);
+    }
+}
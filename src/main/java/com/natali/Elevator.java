@@ -1,267 +1,532 @@
-package com.natali;
-
-import com.natali.command_interfaces.Notifier;
-import com.natali.command_interfaces.PeopleSupplier;
-import lombok.Getter;
-import lombok.Setter;
-import lombok.extern.slf4j.Slf4j;
-
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Function;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
-
-import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
-
-@Slf4j
-public class Elevator implements Runnable {
-    private static final String WRONG_FLOOR_NUMBER = "Floor number must be in range from %i to %i";
-    private static final int WEIGHT_DELTA = 30;
-    /* Elevator configuration*/
-    //time in milliseconds
-    private final int timeToOpenTheDoor;
-    private final int timeOneFloorPath;
-    private final int timeToCloseTheDoor;
-    private final int maxFloor;
-
-    private final int minFloor;
-    @Getter
-    private final int id;
-    private final int maxWeight;
-    /* Communication */
-    private final PeopleSupplier peopleSupplier;
-    private final Function<Integer, StatisticProcessor> statisticProcessorFunction;
-    private Notifier notifier;
-    private final Condition hasClient;
-    private final ReentrantLock lock;
-
-    /* Additional fields to process Up and Down directions */
-
-    private final HashMap<Direction, Comparator<Integer>> comparators;
-    private final HashMap<Direction, Supplier<Integer>> nextFloorSupplier;
-    private final List<Person> passengers;
-    private final ConcurrentSkipListSet<Integer> floorSet;
-
-    /*States*/
-
-    private final AtomicInteger currentFloor;
-
-    @Getter
-    private volatile Direction actualDirection;
-    @Getter
-    private volatile Direction askedDirection;
-    @Setter
-    @Getter
-    private volatile boolean isRunning;
-    @Getter
-    private boolean isOverweight;
-
-    public Elevator(int timeToOpenTheDoor, int timeToCloseTheDoor, int timeOneFloorPath, int maxFloor, int minFloor,
-                    int id, PeopleSupplier peopleSupplier, Function<Integer, StatisticProcessor> statisticProcessorFunction,
-                    int currentFloor, int maxWeight) {
-        checkArgument(currentFloor >= minFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
-        checkArgument(currentFloor <= maxFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
-        this.timeToOpenTheDoor = timeToOpenTheDoor;
-        this.timeToCloseTheDoor = timeToCloseTheDoor;
-        this.timeOneFloorPath = timeOneFloorPath;
-        this.maxFloor = maxFloor;
-        this.minFloor = minFloor;
-        this.id = id;
-        this.peopleSupplier = peopleSupplier;
-        this.statisticProcessorFunction = statisticProcessorFunction;
-        this.maxWeight = maxWeight;
-        this.currentFloor = new AtomicInteger(currentFloor);
-        this.floorSet = new ConcurrentSkipListSet<>();
-
-        passengers = new ArrayList<>();
-        comparators = new HashMap<>();
-        nextFloorSupplier = new HashMap<>();
-
-        isOverweight = false;
-        actualDirection = Direction.Idle;
-        askedDirection = Direction.Idle;
-        isRunning = true;
-
-        comparators.put(Direction.Down, Integer::compareTo);
-        comparators.put(Direction.Up, Comparator.reverseOrder());
-        nextFloorSupplier.put(Direction.Up, floorSet::pollFirst);
-        nextFloorSupplier.put(Direction.Down, floorSet::pollLast);
-
-        lock = new ReentrantLock();
-        hasClient = lock.newCondition();
-    }
-
-    public int getCurrentFloor() {
-        return currentFloor.get();
-    }
-
-
-    private void setAskedDirection(int floor, Direction direction) {
-        if (floor == minFloor) {
-            askedDirection = Direction.Down;
-        } else if (floor == maxFloor) {
-            askedDirection = Direction.Up;
-        } else {
-            askedDirection = direction;
-        }
-    }
-
-    public void addFloor(Integer floor, Direction direction) {
-        checkArgument(floor <= maxFloor || floor >= minFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
-        if (actualDirection == Direction.Idle) {
-            actualDirection = floor > currentFloor.get() ? Direction.Up : Direction.Down;
-            setAskedDirection(floor, direction);
-            floorSet.add(floor);
-            lock.lock();
-            hasClient.signal();
-            lock.unlock();
-            log.info("Wake up elevator {}", id);
-        } else {
-            floorSet.add(floor);
-        }
-    }
-
-    private void waitForClient() {
-        lock.lock();
-        while (floorSet.isEmpty() && isRunning) {
-            try {
-                hasClient.await();
-            } catch (InterruptedException e) {
-                log.error("Thread {} was interrupted {}", Thread.currentThread().getId(), e);
-                isRunning = false;
-            } finally {
-                lock.unlock();
-            }
-        }
-    }
-
-    private int updateTargetFloorValue(int targetFloor) {
-        if (!floorSet.isEmpty()) {
-            int newTargetFloor = nextFloorSupplier.get(askedDirection).get();
-            if (comparators.get(askedDirection).compare(newTargetFloor, targetFloor) > 0) {
-                floorSet.add(targetFloor);
-                targetFloor = newTargetFloor;
-            } else if (newTargetFloor != targetFloor) {
-                floorSet.add(newTargetFloor);
-            }
-        }
-        return targetFloor;
-    }
-
-    private void move() {
-        int targetFloor = nextFloorSupplier.get(askedDirection).get();
-        while (true) {
-            synchronized (this) {
-                actualDirection = targetFloor > currentFloor.get() ? Direction.Up : Direction.Down;
-                targetFloor = updateTargetFloorValue(targetFloor);
-                if (targetFloor == currentFloor.get()) {
-                    break;
-                }
-                currentFloor.addAndGet(actualDirection == Direction.Up ? 1 : -1);
-            }
-            waiting(timeOneFloorPath);
-        }
-
-        if (currentFloor.get() == minFloor || currentFloor.get() == maxFloor) {
-            askedDirection = currentFloor.get() == minFloor ? Direction.Up : Direction.Down;
-            notifier.notifyEmpty();
-        }
-        //
-
-        log.info("The elevator #{} arrived on the {} floor", id, currentFloor.get());
-    }
-
-    private void dropOffClients() {
-        int oldSize = passengers.size();
-        List<Person> leavingPassengers = passengers.stream()
-                .filter(p -> p.getTargetFloor() == currentFloor.get())
-                .collect(Collectors.toList());
-        passengers.removeAll(leavingPassengers);
-        int weight = passengers.stream()
-                .mapToInt(Person::getWeight)
-                .sum();
-        if (maxWeight - weight >= WEIGHT_DELTA) {
-            isOverweight = false;
-        }
-        statisticProcessorFunction.apply(id)
-                .onDropPassengers(currentFloor.get(), LocalDateTime.now(), leavingPassengers);
-        log.info("Elevator {} dropped off {} passengers on the {} floor, weight: {}",
-                id, oldSize - passengers.size(), currentFloor.get(), weight);
-    }
-
-    private void pickUpClients() {
-        actualDirection = askedDirection;
-        int weight = passengers.stream()
-                .mapToInt(Person::getWeight)
-                .sum();
-
-        List<Person> newClients = peopleSupplier.get(maxWeight - weight, currentFloor.get(), askedDirection);
-
-        floorSet.addAll(newClients.stream()
-                .map(Person::getTargetFloor)
-                .collect(Collectors.toSet()));
-
-        passengers.addAll(newClients);
-        weight = passengers.stream()
-                .mapToInt(Person::getWeight)
-                .sum();
-
-        if (maxWeight - weight < WEIGHT_DELTA) {
-            isOverweight = true;
-        }
-        statisticProcessorFunction.apply(id)
-                .onPickPassengers(currentFloor.get(), LocalDateTime.now(), newClients);
-        log.info("Elevator {} picked up {} passengers on the {} floor, weight {}",
-                id, newClients.size(), currentFloor.get(), weight);
-    }
-
-    //синхронизация: добавление этажа в сет и остановка лифта
-    private synchronized void stop() {
-        if (!floorSet.isEmpty()) {
-            return;
-        }
-        actualDirection = Direction.Idle;
-        askedDirection = Direction.Idle;
-        notifier.notifyEmpty();
-        log.info("The elevator {} is idle now", id);
-    }
-
-    private void waiting(int time) {
-        try {
-            Thread.sleep(time);
-        } catch (InterruptedException e) {
-            log.error("Thread {} was interrupted", Thread.currentThread().getId());
-            isRunning = false;
-        }
-    }
-
-    @Override
-    public void run() {
-        while (isRunning) {
-            waitForClient();
-            while (!floorSet.isEmpty() && isRunning) {
-                move();
-                waiting(timeToOpenTheDoor);
-                dropOffClients();
-                pickUpClients();
-                waiting(timeToCloseTheDoor);
-                stop();
-            }
-        }
-
-    }
-
-    public void setNotifier(Notifier notifier) {
-        checkNotNull(notifier);
-        this.notifier = notifier;
-    }
-}
+package com.natali;
+
+import com.natali.command_interfaces.CallDispatcher;
+import com.natali.command_interfaces.FloorDemand;
+import com.natali.command_interfaces.Notifier;
+import com.natali.command_interfaces.PassengerListener;
+import com.natali.command_interfaces.PeopleSupplier;
+import com.natali.command_interfaces.PositionListener;
+import com.natali.events.EventBus;
+import com.natali.events.EventType;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+@Slf4j
+public class Elevator implements Runnable {
+    private static final String WRONG_FLOOR_NUMBER = "Floor number must be in range from %i to %i";
+    private static final int WEIGHT_DELTA = 30;
+    /* Elevator configuration*/
+    //replaced as a whole, read once a trip and once a stop
+    @Getter
+    private volatile ElevatorSettings settings;
+    private final PassengerPool passengerPool;
+    @Getter
+    private final int maxFloor;
+
+    @Getter
+    private final int minFloor;
+    @Getter
+    private final int id;
+    @Getter
+    private final int zoneId;
+    /* Communication */
+    private final PeopleSupplier peopleSupplier;
+    private final Function<Integer, StatisticProcessor> statisticProcessorFunction;
+    private Notifier notifier;
+    private PositionListener positionListener;
+    private PassengerListener passengerListener;
+    private CallDispatcher callDispatcher;
+    private volatile FloorDemand floorDemand;
+    private volatile EventBus eventBus;
+    private final Condition hasClient;
+    private final ReentrantLock lock;
+
+    /* Additional fields to process Up and Down directions */
+
+    private final HashMap<Direction, Comparator<Integer>> comparators;
+    private final HashMap<Direction, Supplier<Integer>> nextFloorSupplier;
+    private final HandleList passengers;
+    private final ConcurrentSkipListSet<Integer> floorSet;
+    //floors the elevator was called to by the controller, the rest of floorSet are passengers' targets
+    private final ConcurrentSkipListSet<Integer> hallStops;
+    //arrival times to the floors, invalidated on every change of the stops, the floor or the direction
+    private volatile EtaProfile etaProfile;
+    //the floor the elevator is moving to, it is taken out of floorSet for the trip, null if the elevator stands
+    private volatile Integer tripTargetFloor;
+
+    /*States*/
+
+    private final AtomicInteger currentFloor;
+
+    @Getter
+    private volatile Direction actualDirection;
+    @Getter
+    private volatile Direction askedDirection;
+    //the direction the elevator waits in on its home floor, Idle if it is not parked
+    @Getter
+    private volatile Direction parkedDirection;
+    @Getter
+    private volatile boolean isRunning;
+    @Getter
+    private volatile boolean isOverweight;
+    @Getter
+    private volatile int load;
+    //the elevator is taken out of service, it delivers its passengers and stops
+    @Getter
+    private volatile boolean isRetiring;
+
+    public Elevator(int timeToOpenTheDoor, int timeToCloseTheDoor, int timeOneFloorPath, int maxFloor, int minFloor,
+                    int id, PeopleSupplier peopleSupplier, Function<Integer, StatisticProcessor> statisticProcessorFunction,
+                    int currentFloor, int maxWeight) {
+        this(timeToOpenTheDoor, timeToCloseTheDoor, timeOneFloorPath, maxFloor, minFloor, id, peopleSupplier,
+                statisticProcessorFunction, currentFloor, maxWeight, 0);
+    }
+
+    public Elevator(int timeToOpenTheDoor, int timeToCloseTheDoor, int timeOneFloorPath, int maxFloor, int minFloor,
+                    int id, PeopleSupplier peopleSupplier, Function<Integer, StatisticProcessor> statisticProcessorFunction,
+                    int currentFloor, int maxWeight, int zoneId) {
+        this(timeToOpenTheDoor, timeToCloseTheDoor, maxFloor, minFloor, id, peopleSupplier,
+                statisticProcessorFunction, currentFloor, maxWeight, zoneId, DwellModel.NONE,
+                FlightTimeTable.linear(timeOneFloorPath, maxFloor - minFloor), new PassengerPool());
+    }
+
+    public Elevator(int timeToOpenTheDoor, int timeToCloseTheDoor, int maxFloor, int minFloor,
+                    int id, PeopleSupplier peopleSupplier, Function<Integer, StatisticProcessor> statisticProcessorFunction,
+                    int currentFloor, int maxWeight, int zoneId, DwellModel dwellModel, FlightTimeTable flightTimeTable,
+                    PassengerPool passengerPool) {
+        this(new ElevatorSettings(timeToOpenTheDoor, timeToCloseTheDoor, dwellModel, flightTimeTable, maxWeight),
+                maxFloor, minFloor, id, peopleSupplier, statisticProcessorFunction, currentFloor, zoneId, passengerPool);
+    }
+
+    public Elevator(ElevatorSettings settings, int maxFloor, int minFloor, int id, PeopleSupplier peopleSupplier,
+                    Function<Integer, StatisticProcessor> statisticProcessorFunction, int currentFloor, int zoneId,
+                    PassengerPool passengerPool) {
+        checkNotNull(settings);
+        checkNotNull(passengerPool);
+        checkArgument(settings.getFlightTimeTable().getMaxDistance() >= maxFloor - minFloor,
+                "Flight time table is too short");
+        checkArgument(currentFloor >= minFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
+        checkArgument(currentFloor <= maxFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
+        this.settings = settings;
+        this.passengerPool = passengerPool;
+        this.maxFloor = maxFloor;
+        this.minFloor = minFloor;
+        this.id = id;
+        this.zoneId = zoneId;
+        this.peopleSupplier = peopleSupplier;
+        this.statisticProcessorFunction = statisticProcessorFunction;
+        this.currentFloor = new AtomicInteger(currentFloor);
+        this.floorSet = new ConcurrentSkipListSet<>();
+        this.hallStops = new ConcurrentSkipListSet<>();
+        etaProfile = new EtaProfile(minFloor, maxFloor, settings.getFlightTimeTable(), settings.getStopTime());
+
+        passengers = new HandleList();
+        comparators = new HashMap<>();
+        nextFloorSupplier = new HashMap<>();
+
+        isOverweight = false;
+        actualDirection = Direction.Idle;
+        askedDirection = Direction.Idle;
+        parkedDirection = Direction.Idle;
+        isRunning = true;
+        positionListener = () -> {
+        };
+        callDispatcher = (floor, direction) -> {
+        };
+        passengerListener = (floor, people) -> {
+        };
+
+        comparators.put(Direction.Down, Integer::compareTo);
+        comparators.put(Direction.Up, Comparator.reverseOrder());
+        nextFloorSupplier.put(Direction.Up, floorSet::pollFirst);
+        nextFloorSupplier.put(Direction.Down, floorSet::pollLast);
+
+        lock = new ReentrantLock();
+        hasClient = lock.newCondition();
+    }
+
+    public int getCurrentFloor() {
+        return currentFloor.get();
+    }
+
+    //time to fly from the current floor to the given one without stops
+    public int getFlightTime(int floor) {
+        return settings.getFlightTimeTable().getFlightTime(floor - currentFloor.get());
+    }
+
+    /**
+     * New timings and capacity of the elevator. A running elevator finishes its current trip or stop
+     * with the old settings and takes the new ones for the next.
+     */
+    public void setSettings(ElevatorSettings settings) {
+        checkNotNull(settings);
+        checkArgument(settings.getFlightTimeTable().getMaxDistance() >= maxFloor - minFloor,
+                "Flight time table is too short");
+        synchronized (this) {
+            this.settings = settings;
+            etaProfile = new EtaProfile(minFloor, maxFloor, settings.getFlightTimeTable(), settings.getStopTime());
+        }
+        positionListener.onPositionChanged();
+        log.info("Elevator {} has new settings: {}", id, settings);
+    }
+
+    /**
+     * A stopped elevator is woken up if it waits for a client, so its thread ends at once.
+     */
+    public void setRunning(boolean running) {
+        lock.lock();
+        try {
+            isRunning = running;
+            hasClient.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the elevator out of service: it serves the floors it has, then its thread ends.
+     * The controller must not give it new calls.
+     */
+    public void retire() {
+        isRetiring = true;
+        lock.lock();
+        try {
+            hasClient.signal();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Elevator {} is retiring", id);
+    }
+
+    /**
+     * Time to arrive on the floor for a call of the direction, taking the stops of the elevator on the way.
+     * The profile of the elevator is rebuilt once after a change, the rest of the queries are array reads.
+     */
+    public int getEstimatedArrivalTime(int floor, Direction direction) {
+        checkArgument(floor >= minFloor && floor <= maxFloor, "Floor %s is out of range", floor);
+        EtaProfile profile = etaProfile;
+        long version = profile.getVersion();
+        return profile.get(floor, direction, version, currentFloor.get(), actualDirection, floorSet,
+                tripTargetFloor);
+    }
+
+    public int getSpareCapacity() {
+        return settings.getBearingCapacity() - load;
+    }
+
+    //the car boards the queue of its asked direction, on the end floors there is only one
+    public boolean isCalledTo(int floor, Direction direction) {
+        return hallStops.contains(floor) && (askedDirection == direction || floor == minFloor || floor == maxFloor);
+    }
+
+
+    private void setAskedDirection(int floor, Direction direction) {
+        if (floor == minFloor) {
+            askedDirection = Direction.Down;
+        } else if (floor == maxFloor) {
+            askedDirection = Direction.Up;
+        } else {
+            askedDirection = direction;
+        }
+    }
+
+    /**
+     * Sends the elevator to its home floor. The elevator keeps the direction to wait in after the arrival,
+     * until it gets a call or takes people.
+     */
+    public void park(int floor, Direction direction) {
+        if (floor != currentFloor.get()) {
+            addFloor(floor, direction);
+        }
+        parkedDirection = direction;
+    }
+
+    public void addFloor(Integer floor, Direction direction) {
+        checkArgument(floor <= maxFloor || floor >= minFloor, WRONG_FLOOR_NUMBER, minFloor, maxFloor);
+        parkedDirection = Direction.Idle;
+        hallStops.add(floor);
+        if (actualDirection == Direction.Idle) {
+            actualDirection = floor > currentFloor.get() ? Direction.Up : Direction.Down;
+            setAskedDirection(floor, direction);
+            floorSet.add(floor);
+            etaProfile.invalidate();
+            positionListener.onPositionChanged();
+            lock.lock();
+            hasClient.signal();
+            lock.unlock();
+            log.info("Wake up elevator {}", id);
+        } else {
+            floorSet.add(floor);
+            etaProfile.invalidate();
+        }
+    }
+
+    //the lock is held for the whole check, otherwise a floor added before the wait is missed
+    private void waitForClient() {
+        lock.lock();
+        try {
+            while (floorSet.isEmpty() && isRunning && !isRetiring) {
+                hasClient.await();
+            }
+        } catch (InterruptedException e) {
+            if (isRunning) {
+                log.error("Thread {} was interrupted {}", Thread.currentThread().getId(), e);
+            }
+            isRunning = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int updateTargetFloorValue(int targetFloor) {
+        if (!floorSet.isEmpty()) {
+            int newTargetFloor = nextFloorSupplier.get(askedDirection).get();
+            if (comparators.get(askedDirection).compare(newTargetFloor, targetFloor) > 0) {
+                floorSet.add(targetFloor);
+                targetFloor = newTargetFloor;
+            } else if (newTargetFloor != targetFloor) {
+                floorSet.add(newTargetFloor);
+            }
+        }
+        return targetFloor;
+    }
+
+    private void move() {
+        FlightTimeTable flightTimeTable = settings.getFlightTimeTable();
+        int targetFloor = nextFloorSupplier.get(askedDirection).get();
+        int passedFloors = 0;
+        int floorPassTime;
+        //a stopped elevator leaves the trip where it is
+        while (isRunning) {
+            synchronized (this) {
+                actualDirection = targetFloor > currentFloor.get() ? Direction.Up : Direction.Down;
+                targetFloor = updateTargetFloorValue(targetFloor);
+                tripTargetFloor = targetFloor;
+                if (targetFloor == currentFloor.get()) {
+                    tripTargetFloor = null;
+                    etaProfile.invalidate();
+                    break;
+                }
+                currentFloor.addAndGet(actualDirection == Direction.Up ? 1 : -1);
+                passedFloors++;
+                etaProfile.invalidate();
+                positionListener.onPositionChanged();
+                publish(EventType.Move, 0);
+                //the trip may become shorter if a closer floor is added on the way
+                floorPassTime = flightTimeTable.getFloorPassTime(
+                        passedFloors + Math.abs(targetFloor - currentFloor.get()));
+            }
+            waiting(floorPassTime);
+        }
+
+        if (currentFloor.get() == minFloor || currentFloor.get() == maxFloor) {
+            askedDirection = currentFloor.get() == minFloor ? Direction.Up : Direction.Down;
+            notifier.notifyEmpty();
+        }
+        //
+
+        log.info("The elevator #{} arrived on the {} floor", id, currentFloor.get());
+    }
+
+    private boolean isCarStop(int floor) {
+        for (int i = 0; i < passengers.size(); i++) {
+            if (passengerPool.getTargetFloor(passengers.get(i)) == floor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //a hall stop is passed if nobody waits on the floor any more or if the first person does not fit,
+    //in the latter case the call goes back to the controller
+    private boolean isStopNeeded() {
+        int floor = currentFloor.get();
+        FloorDemand demand = floorDemand;
+        if (!hallStops.remove(floor) || isCarStop(floor) || Objects.isNull(demand)) {
+            return true;
+        }
+        int firstPersonWeight = demand.getFirstPersonWeight(zoneId, floor, askedDirection);
+        if (firstPersonWeight == 0) {
+            log.info("Elevator {} passes the {} floor, nobody is waiting", id, floor);
+            return false;
+        }
+        if (getSpareCapacity() < firstPersonWeight) {
+            log.info("Elevator {} passes the {} floor, no room for waiting people", id, floor);
+            callDispatcher.dispatch(floor, askedDirection);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isFloorQueueEmpty() {
+        FloorDemand demand = floorDemand;
+        return !Objects.isNull(demand)
+                && demand.getFirstPersonWeight(zoneId, currentFloor.get(), askedDirection) == 0;
+    }
+
+    private int dropOffClients(int maxWeight) {
+        HandleList leaving = new HandleList();
+        int weight = 0;
+        int handle;
+        for (int i = passengers.size() - 1; i >= 0; i--) {
+            handle = passengers.get(i);
+            if (passengerPool.getTargetFloor(handle) == currentFloor.get()) {
+                leaving.add(handle);
+                passengers.removeAt(i);
+            } else {
+                weight += passengerPool.getWeight(handle);
+            }
+        }
+        load = weight;
+        if (maxWeight - weight >= WEIGHT_DELTA) {
+            isOverweight = false;
+        }
+        int[] leavingPassengers = leaving.toArray();
+        statisticProcessorFunction.apply(id)
+                .onDropPassengers(currentFloor.get(), System.nanoTime(), passengerPool, leavingPassengers);
+        passengerListener.onDroppedOff(currentFloor.get(), leavingPassengers);
+        for (int passenger : leavingPassengers) {
+            passengerPool.release(passenger);
+        }
+        log.info("Elevator {} dropped off {} passengers on the {} floor, weight: {}",
+                id, leavingPassengers.length, currentFloor.get(), weight);
+        publish(EventType.Alight, leavingPassengers.length);
+        return leavingPassengers.length;
+    }
+
+    private int pickUpClients(int maxWeight) {
+        actualDirection = askedDirection;
+        etaProfile.invalidate();
+        positionListener.onPositionChanged();
+        int weight = load;
+        int[] newClients = peopleSupplier.get(maxWeight - weight, currentFloor.get(), askedDirection);
+        long now = System.nanoTime();
+
+        for (int passenger : newClients) {
+            passengerPool.setBoardingTime(passenger, now);
+            floorSet.add(passengerPool.getTargetFloor(passenger));
+            passengers.add(passenger);
+            weight += passengerPool.getWeight(passenger);
+        }
+        load = weight;
+        etaProfile.invalidate();
+        if (newClients.length > 0) {
+            parkedDirection = Direction.Idle;
+        }
+
+        if (maxWeight - weight < WEIGHT_DELTA) {
+            isOverweight = true;
+        }
+        statisticProcessorFunction.apply(id)
+                .onPickPassengers(currentFloor.get(), now, passengerPool, newClients);
+        log.info("Elevator {} picked up {} passengers on the {} floor, weight {}",
+                id, newClients.length, currentFloor.get(), weight);
+        publish(EventType.Board, newClients.length);
+        return newClients.length;
+    }
+
+    //синхронизация: добавление этажа в сет и остановка лифта
+    private synchronized void stop() {
+        if (!floorSet.isEmpty()) {
+            return;
+        }
+        actualDirection = Direction.Idle;
+        askedDirection = Direction.Idle;
+        etaProfile.invalidate();
+        positionListener.onPositionChanged();
+        publish(EventType.Idle, 0);
+        notifier.notifyEmpty();
+        log.info("The elevator {} is idle now", id);
+    }
+
+    private void publish(EventType type, int passengers) {
+        EventBus bus = eventBus;
+        if (!Objects.isNull(bus)) {
+            bus.publish(type, zoneId, id, currentFloor.get(), actualDirection, passengers);
+        }
+    }
+
+    private void waiting(int time) {
+        if (!isRunning) {
+            return;
+        }
+        try {
+            Thread.sleep(time);
+        } catch (InterruptedException e) {
+            //a stopped elevator is interrupted to cut the trip short
+            if (isRunning) {
+                log.error("Thread {} was interrupted", Thread.currentThread().getId());
+            }
+            isRunning = false;
+        }
+    }
+
+    @Override
+    public void run() {
+        int alighted, boarded;
+        ElevatorSettings stopSettings;
+        while (isRunning) {
+            waitForClient();
+            while (!floorSet.isEmpty() && isRunning) {
+                move();
+                if (isStopNeeded()) {
+                    stopSettings = settings;
+                    waiting(stopSettings.getTimeToOpenTheDoor());
+                    publish(EventType.DoorOpen, 0);
+                    alighted = dropOffClients(stopSettings.getBearingCapacity());
+                    boarded = pickUpClients(stopSettings.getBearingCapacity());
+                    waiting(stopSettings.getDwellModel().getDwellTime(alighted, boarded, isFloorQueueEmpty()));
+                    waiting(stopSettings.getTimeToCloseTheDoor());
+                    publish(EventType.DoorClose, 0);
+                }
+                stop();
+            }
+            if (isRetiring && floorSet.isEmpty()) {
+                isRunning = false;
+                log.info("Elevator {} is out of service", id);
+            }
+        }
+
+    }
+
+    public void setNotifier(Notifier notifier) {
+        checkNotNull(notifier);
+        this.notifier = notifier;
+    }
+
+    public void setCallDispatcher(CallDispatcher callDispatcher) {
+        checkNotNull(callDispatcher);
+        this.callDispatcher = callDispatcher;
+    }
+
+    public void setFloorDemand(FloorDemand floorDemand) {
+        this.floorDemand = floorDemand;
+    }
+
+    public void setPositionListener(PositionListener positionListener) {
+        checkNotNull(positionListener);
+        this.positionListener = positionListener;
+    }
+
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    public void setPassengerListener(PassengerListener passengerListener) {
+        checkNotNull(passengerListener);
+        this.passengerListener = passengerListener;
+    }
+}
@@ -0,0 +1,143 @@
+package com.natali;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Elevators of one zone indexed by actual direction and current floor.
+ * Updates are serialized, lookups are lock-free and may see a slightly outdated position,
+ * so the caller must check the found elevator again under its monitor.
+ */
+public class ElevatorIndex {
+    private final Map<Direction, NavigableMap<Integer, Set<Elevator>>> positions;
+    private final Map<Elevator, Position> lastPositions;
+
+    private static class Position {
+        private final Direction direction;
+        private final int floor;
+
+        private Position(Direction direction, int floor) {
+            this.direction = direction;
+            this.floor = floor;
+        }
+    }
+
+    public ElevatorIndex() {
+        positions = new EnumMap<>(Direction.class);
+        for (Direction direction : Direction.values()) {
+            positions.put(direction, new ConcurrentSkipListMap<>());
+        }
+        lastPositions = new ConcurrentHashMap<>();
+    }
+
+    public synchronized void update(Elevator elevator) {
+        checkNotNull(elevator);
+        Position position = new Position(elevator.getActualDirection(), elevator.getCurrentFloor());
+        Position oldPosition = lastPositions.put(elevator, position);
+        if (!Objects.isNull(oldPosition)) {
+            if (oldPosition.direction == position.direction && oldPosition.floor == position.floor) {
+                return;
+            }
+            removeFromFloor(elevator, oldPosition);
+        }
+        positions.get(position.direction)
+                .computeIfAbsent(position.floor, floor -> new ConcurrentSkipListSet<>(
+                        Comparator.comparingInt(Elevator::getId)))
+                .add(elevator);
+    }
+
+    public synchronized void remove(Elevator elevator) {
+        Position oldPosition = lastPositions.remove(elevator);
+        if (!Objects.isNull(oldPosition)) {
+            removeFromFloor(elevator, oldPosition);
+        }
+    }
+
+    private void removeFromFloor(Elevator elevator, Position position) {
+        NavigableMap<Integer, Set<Elevator>> floors = positions.get(position.direction);
+        Set<Elevator> elevators = floors.get(position.floor);
+        elevators.remove(elevator);
+        if (elevators.isEmpty()) {
+            floors.remove(position.floor);
+        }
+    }
+
+    //the closest occupied floor at or above (below) the given one in any direction
+    private Integer nextFloor(int floor, boolean isUpper) {
+        Integer result = null;
+        Integer candidate;
+        for (NavigableMap<Integer, Set<Elevator>> floors : positions.values()) {
+            candidate = isUpper ? floors.ceilingKey(floor) : floors.floorKey(floor);
+            if (!Objects.isNull(candidate) && (Objects.isNull(result)
+                    || (isUpper ? candidate < result : candidate > result))) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks the occupied floors starting from the nearest one, on the same distance the upper floor goes first,
+     * and chooses by the arrival time. The flight time from a floor is the lower bound of the arrival time of its
+     * elevators, so the walk stops on the floor none of which elevators can beat the best one. On the same arrival
+     * time the nearer elevator wins.
+     *
+     * @return the suitable elevator with the least arrival time or null
+     */
+    public Elevator findFastest(int floor, Predicate<Elevator> isSuitable, ToIntFunction<Elevator> arrivalTime) {
+        Integer upper = nextFloor(floor, true);
+        Integer lower = nextFloor(floor - 1, false);
+        Elevator fastest = null;
+        int fastestTime = Integer.MAX_VALUE;
+        int time;
+        boolean isUpper;
+        boolean isReachable;
+        int candidateFloor;
+        Set<Elevator> elevators;
+        while (!Objects.isNull(upper) || !Objects.isNull(lower)) {
+            isUpper = Objects.isNull(lower) || (!Objects.isNull(upper) && upper - floor <= floor - lower);
+            candidateFloor = isUpper ? upper : lower;
+            isReachable = false;
+            for (NavigableMap<Integer, Set<Elevator>> floors : positions.values()) {
+                elevators = floors.get(candidateFloor);
+                if (Objects.isNull(elevators)) {
+                    continue;
+                }
+                for (Elevator elevator : elevators) {
+                    if (elevator.getFlightTime(floor) >= fastestTime) {
+                        continue;
+                    }
+                    isReachable = true;
+                    if (!isSuitable.test(elevator)) {
+                        continue;
+                    }
+                    time = arrivalTime.applyAsInt(elevator);
+                    if (time < fastestTime) {
+                        fastest = elevator;
+                        fastestTime = time;
+                    }
+                }
+            }
+            if (!Objects.isNull(fastest) && !isReachable) {
+                break;
+            }
+            if (isUpper) {
+                upper = nextFloor(candidateFloor + 1, true);
+            } else {
+                lower = nextFloor(candidateFloor - 1, false);
+            }
+        }
+        return fastest;
+    }
+}
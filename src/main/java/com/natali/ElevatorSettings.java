@@ -0,0 +1,39 @@
+package com.natali;
+
+import lombok.Value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Timings and capacity of an elevator, times are in milliseconds. The settings of a running elevator are
+ * replaced as a whole: the elevator takes them at the start of every trip and every stop, so a change never
+ * applies in the middle of one.
+ */
+@Value
+public class ElevatorSettings {
+    int timeToOpenTheDoor;
+    int timeToCloseTheDoor;
+    DwellModel dwellModel;
+    FlightTimeTable flightTimeTable;
+    int bearingCapacity;
+
+    public ElevatorSettings(int timeToOpenTheDoor, int timeToCloseTheDoor, DwellModel dwellModel,
+                            FlightTimeTable flightTimeTable, int bearingCapacity) {
+        checkArgument(timeToOpenTheDoor >= 0, "Time to open the door must not be negative");
+        checkArgument(timeToCloseTheDoor >= 0, "Time to close the door must not be negative");
+        checkNotNull(dwellModel);
+        checkNotNull(flightTimeTable);
+        checkArgument(bearingCapacity > 0, "Bearing capacity must be positive");
+        this.timeToOpenTheDoor = timeToOpenTheDoor;
+        this.timeToCloseTheDoor = timeToCloseTheDoor;
+        this.dwellModel = dwellModel;
+        this.flightTimeTable = flightTimeTable;
+        this.bearingCapacity = bearingCapacity;
+    }
+
+    //the shortest stop: the door opens, stays open for the min dwell time and closes
+    public int getStopTime() {
+        return timeToOpenTheDoor + dwellModel.getMinDwellTime() + timeToCloseTheDoor;
+    }
+}
@@ -1,126 +1,315 @@
-package com.natali;
-
-import lombok.extern.slf4j.Slf4j;
-
-import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-
-import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
-
-@Slf4j
-public class Environment {
-
-    private static final int TIME_TO_WAIT_AFTER_ELEVATOR_LEAVE = 150;
-
-    private final int MAX_FLOOR;
-    private final int MIN_FLOOR;
-    private final Controller controller;
-    private final StatisticsWriter statisticsWriter;
-
-    private final ThreadPoolExecutor waitingPool;
-
-    private final Map<Integer, ConcurrentLinkedQueue<Person>> floorQueueUp;
-    private final Map<Integer, ConcurrentLinkedQueue<Person>> floorQueueDown;
-
-
-    private volatile boolean isRunning;
-
-    public Environment(int timeInterval, int max_floor, int min_floor, int elevatorsNumber,
-                       int timeToOpenTheDoor, int timeToCloseTheDoor, int timeToPassAFloor, int bearingCapacity) {
-        checkArgument(max_floor > min_floor, "");
-        checkArgument(timeInterval > 0);
-        checkArgument(timeToOpenTheDoor >= 0);
-        checkArgument(timeToCloseTheDoor >= 0);
-        checkArgument(timeToPassAFloor >= 0);
-        checkArgument(bearingCapacity > 0);
-        checkArgument(elevatorsNumber > 0);
-
-        MAX_FLOOR = max_floor;
-        MIN_FLOOR = min_floor;
-        isRunning = true;
-
-        statisticsWriter = new
-                StatisticsWriter(MIN_FLOOR, MAX_FLOOR, "statistics.txt", elevatorsNumber);
-        waitingPool = (ThreadPoolExecutor) Executors.newCachedThreadPool();
-
-        floorQueueUp = new HashMap<>();
-        floorQueueDown = new HashMap<>();
-        initializeFloorMaps();
-        controller = createController(elevatorsNumber,
-                timeToOpenTheDoor, timeToCloseTheDoor, timeToPassAFloor, bearingCapacity);
-        PeopleGenerator peopleGenerator = new PeopleGenerator(timeInterval, MAX_FLOOR, MIN_FLOOR, this::addPerson);
-
-        new Thread(peopleGenerator).start();
-        new Thread(statisticsWriter).start();
-
-    }
-
-    private void addPerson(Person person) {
-        checkNotNull(person);
-        Direction direction = person.getDirection();
-        int floor = person.getStartFloor();
-        int targetFloor = person.getTargetFloor();
-        ConcurrentLinkedQueue<Person> queue = Direction.Down == direction ? floorQueueDown.get(floor) : floorQueueUp.get(floor);
-        queue.add(person);
-        log.info("A person appeared on the {} floor (target floor: {})", floor, targetFloor);
-
-        //if there are more than 1 people generators then add synchronization
-        if (queue.size() == 1) {
-            controller.addClientParallel(direction, floor);
-        }
-
-    }
-
-    private void initializeFloorMaps() {
-        for (int i = MIN_FLOOR; i <= MAX_FLOOR; i++) {
-            floorQueueDown.put(i, new ConcurrentLinkedQueue<>());
-            floorQueueUp.put(i, new ConcurrentLinkedQueue<>());
-        }
-    }
-
-
-    public void DelayedCall(Direction direction, int floor) {
-        try {
-            Thread.sleep(TIME_TO_WAIT_AFTER_ELEVATOR_LEAVE);
-        } catch (InterruptedException e) {
-            log.error("Thread was interrupted", e);
-        }
-        controller.addClientParallel(direction, floor);
-    }
-
-
-    public List<Person> getPersonsList(int weight, int floor, Direction direction) {
-        Queue<Person> queue = direction == Direction.Down ? floorQueueDown.get(floor) : floorQueueUp.get(floor);
-        int totalWeight = 0;
-        List<Person> resultPersonsList = new ArrayList<>();
-        Person person;
-        // if for some reason more than one elevator picking up passengers from this floor
-        synchronized (queue) {
-            while (!queue.isEmpty() && queue.peek().getWeight() + totalWeight <= weight) {
-                person = queue.poll();
-                checkNotNull(person);
-                totalWeight += person.getWeight();
-                resultPersonsList.add(person);
-            }
-            if (!queue.isEmpty()) {
-                waitingPool.submit(() -> DelayedCall(direction, floor));
-            }
-        }
-        return resultPersonsList;
-    }
-
-
-    private Controller createController(int elevatorsNumber, int timeToOpenTheDoor,
-                                        int timeToCloseTheDoor, int timeToPassAFloor, int bearingCapacity) {
-        List<Elevator> elevators = new ArrayList<>();
-        for (int i = 1; i <= elevatorsNumber; i++) {
-            elevators.add(new Elevator(
-                    timeToOpenTheDoor, timeToCloseTheDoor, timeToPassAFloor, MAX_FLOOR, MIN_FLOOR,
-                    i, this::getPersonsList, statisticsWriter::getDataProcessor, MIN_FLOOR, bearingCapacity));
-        }
-        return new Controller(elevators, isRunning);
-    }
-}
+package com.natali;
+
+import com.natali.command_interfaces.FloorDemand;
+import com.natali.events.ElevatorEvent;
+import com.natali.events.EventBus;
+import com.natali.events.EventType;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+@Slf4j
+public class Environment implements FloorDemand {
+
+    private static final int TIME_TO_WAIT_AFTER_ELEVATOR_LEAVE = 150;
+    private static final int SHUTDOWN_TIMEOUT = 1000;
+    public static final String STATISTICS_FILE = "statistics.txt";
+    public static final String STATISTICS_STORE_FILE = "statistics.tss";
+
+    private final int MAX_FLOOR;
+    private final int MIN_FLOOR;
+    private final Controller controller;
+    private final StatisticsWriter statisticsWriter;
+    @Getter
+    private final List<Zone> zones;
+    private volatile ParkingPolicy parkingPolicy;
+    //the settings new elevators get
+    @Getter
+    private volatile ElevatorSettings elevatorSettings;
+    //ids of removed elevators are not reused
+    private final AtomicInteger nextElevatorId;
+    private final PeopleGenerator peopleGenerator;
+    private final Thread peopleGeneratorThread;
+    private final Thread statisticsWriterThread;
+    @Getter
+    private final PassengerPool passengerPool;
+    @Getter
+    private final TripStatistics tripStatistics;
+    //subscribe to watch the simulation
+    @Getter
+    private final EventBus eventBus;
+
+    //zone - floor - queue
+    private final List<Map<Integer, FloorQueue>> floorQueueUp;
+    private final List<Map<Integer, FloorQueue>> floorQueueDown;
+
+
+    private volatile boolean isRunning;
+
+    public Environment(int timeInterval, int max_floor, int min_floor, int elevatorsNumber,
+                       int timeToOpenTheDoor, int timeToCloseTheDoor, int timeToPassAFloor, int bearingCapacity) {
+        this(timeInterval, max_floor, min_floor, elevatorsNumber, timeToOpenTheDoor, timeToCloseTheDoor,
+                bearingCapacity, Controller.DISPATCH_THREADS, Controller.DISPATCH_QUEUE_CAPACITY,
+                Zone.singleZone(min_floor, max_floor, elevatorsNumber), null, DwellModel.NONE,
+                FlightTimeTable.linear(timeToPassAFloor, max_floor - min_floor), new Random(),
+                TrafficProfile.Uniform, null, STATISTICS_FILE, STATISTICS_STORE_FILE);
+    }
+
+    public Environment(int timeInterval, int max_floor, int min_floor, int elevatorsNumber,
+                       int timeToOpenTheDoor, int timeToCloseTheDoor, int bearingCapacity,
+                       int dispatchThreads, int dispatchQueueCapacity, List<Zone> zones,
+                       ParkingPolicy parkingPolicy, DwellModel dwellModel, FlightTimeTable flightTimeTable,
+                       Random random, TrafficProfile trafficProfile, DispatchPolicyTable dispatchPolicyTable,
+                       String statisticsFileName, String statisticsStoreFileName) {
+        checkArgument(max_floor > min_floor, "");
+        checkArgument(timeInterval > 0);
+        checkArgument(timeToOpenTheDoor >= 0);
+        checkArgument(timeToCloseTheDoor >= 0);
+        checkArgument(bearingCapacity > 0);
+        checkArgument(elevatorsNumber > 0);
+        checkNotNull(zones);
+        checkNotNull(dwellModel);
+        checkNotNull(flightTimeTable);
+        checkNotNull(random);
+        checkNotNull(trafficProfile);
+        checkArgument(flightTimeTable.getMaxDistance() >= max_floor - min_floor, "Flight time table is too short");
+        checkArgument(zones.stream().mapToInt(Zone::getElevatorsNumber).sum() == elevatorsNumber,
+                "Zones must contain %s elevators", elevatorsNumber);
+
+        MAX_FLOOR = max_floor;
+        MIN_FLOOR = min_floor;
+        this.zones = zones;
+        this.parkingPolicy = parkingPolicy;
+        passengerPool = new PassengerPool();
+        tripStatistics = new TripStatistics(passengerPool);
+        eventBus = new EventBus();
+        isRunning = true;
+
+        statisticsWriter = new StatisticsWriter(MIN_FLOOR, MAX_FLOOR, statisticsFileName, elevatorsNumber,
+                statisticsStoreFileName);
+        elevatorSettings = new ElevatorSettings(timeToOpenTheDoor, timeToCloseTheDoor, dwellModel, flightTimeTable,
+                bearingCapacity);
+        nextElevatorId = new AtomicInteger(1);
+
+        floorQueueUp = new ArrayList<>();
+        floorQueueDown = new ArrayList<>();
+        initializeFloorMaps();
+        controller = createController(dispatchThreads, dispatchQueueCapacity);
+        controller.setParkingPolicy(parkingPolicy);
+        controller.setDispatchPolicyTable(dispatchPolicyTable);
+        controller.setFloorDemand(this);
+        controller.setEventBus(eventBus);
+        peopleGenerator = new PeopleGenerator(timeInterval, MAX_FLOOR, MIN_FLOOR, passengerPool, this::addPerson,
+                (start, target) -> !Objects.isNull(getZone(start, target)), random, trafficProfile);
+
+        peopleGeneratorThread = new Thread(peopleGenerator, "people-generator");
+        statisticsWriterThread = new Thread(statisticsWriter, "statistics-writer");
+        peopleGeneratorThread.start();
+        statisticsWriterThread.start();
+
+    }
+
+    //stops generating people and all the threads of the simulation, returns when the threads are over
+    public void stop() {
+        isRunning = false;
+        peopleGenerator.setRunning(false);
+        peopleGeneratorThread.interrupt();
+        join(peopleGeneratorThread);
+        statisticsWriter.setRunning(false);
+        controller.setRunning(false);
+        join(statisticsWriterThread);
+        eventBus.close();
+        log.info("Trip statistics:\n{}", tripStatistics);
+    }
+
+    private void join(Thread thread) {
+        try {
+            thread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            log.error("Thread {} was interrupted", Thread.currentThread().getId());
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Thread {} did not stop in {} ms", thread.getName(), SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    //the first zone which serves both floors, a person goes to the elevators of this zone
+    private Zone getZone(int startFloor, int targetFloor) {
+        for (Zone zone : zones) {
+            if (zone.serves(startFloor, targetFloor)) {
+                return zone;
+            }
+        }
+        return null;
+    }
+
+    private FloorQueue getQueue(int zoneId, int floor, Direction direction) {
+        return Direction.Down == direction ? floorQueueDown.get(zoneId).get(floor) : floorQueueUp.get(zoneId).get(floor);
+    }
+
+    @Override
+    public int getQueuedWeight(int zoneId, int floor, Direction direction) {
+        return getQueue(zoneId, floor, direction).getTotalWeight();
+    }
+
+    @Override
+    public int getFirstPersonWeight(int zoneId, int floor, Direction direction) {
+        return getQueue(zoneId, floor, direction).getFirstPersonWeight();
+    }
+
+    private void addPerson(int passenger) {
+        Direction direction = passengerPool.getDirection(passenger);
+        int floor = passengerPool.getStartFloor(passenger);
+        int targetFloor = passengerPool.getTargetFloor(passenger);
+        Zone zone = getZone(floor, targetFloor);
+        checkArgument(!Objects.isNull(zone), "No zone serves floors %s and %s", floor, targetFloor);
+        FloorQueue queue = getQueue(zone.getId(), floor, direction);
+        queue.add(passenger);
+        tripStatistics.onAppeared();
+        eventBus.publish(EventType.Arrival, zone.getId(), ElevatorEvent.NO_ELEVATOR, floor, direction, 1);
+        ParkingPolicy policy = parkingPolicy;
+        if (!Objects.isNull(policy)) {
+            policy.onArrival(zone.getId(), floor, direction);
+        }
+        log.info("A person appeared on the {} floor (target floor: {}, zone: {})", floor, targetFloor, zone.getId());
+
+        //if there are more than 1 people generators then add synchronization
+        //a growing crowd gets one more elevator as soon as the called ones cannot take it
+        if (queue.needsCall(controller.getAssignedCapacity(zone.getId(), floor, direction))) {
+            controller.addClientParallel(zone.getId(), direction, floor);
+        }
+
+    }
+
+    private void initializeFloorMaps() {
+        Map<Integer, FloorQueue> zoneQueueDown, zoneQueueUp;
+        for (Zone zone : zones) {
+            zoneQueueDown = new HashMap<>();
+            zoneQueueUp = new HashMap<>();
+            for (int i = zone.getLowestFloor(); i <= zone.getHighestFloor(); i++) {
+                if (zone.serves(i)) {
+                    zoneQueueDown.put(i, new FloorQueue(passengerPool));
+                    zoneQueueUp.put(i, new FloorQueue(passengerPool));
+                }
+            }
+            floorQueueDown.add(zoneQueueDown);
+            floorQueueUp.add(zoneQueueUp);
+        }
+    }
+
+
+    public int[] getPersonsList(int zoneId, int weight, int floor, Direction direction) {
+        FloorQueue queue = getQueue(zoneId, floor, direction);
+        int totalWeight = 0;
+        HandleList passengers = new HandleList();
+        int passenger;
+        // if for some reason more than one elevator picking up passengers from this floor
+        synchronized (queue) {
+            while (!queue.isEmpty() && queue.getFirstPersonWeight() + totalWeight <= weight) {
+                passenger = queue.poll();
+                totalWeight += passengerPool.getWeight(passenger);
+                passengers.add(passenger);
+            }
+            if (!queue.isEmpty()) {
+                controller.addClientDelayed(zoneId, direction, floor, TIME_TO_WAIT_AFTER_ELEVATOR_LEAVE);
+            }
+        }
+        int[] resultPersonsList = passengers.toArray();
+        tripStatistics.onBoarded(resultPersonsList);
+        return resultPersonsList;
+    }
+
+
+    private Elevator createElevator(Zone zone) {
+        Elevator elevator = new Elevator(elevatorSettings, zone.getHighestFloor(), zone.getLowestFloor(),
+                nextElevatorId.getAndIncrement(),
+                (weight, floor, direction) -> getPersonsList(zone.getId(), weight, floor, direction),
+                statisticsWriter::getDataProcessor, zone.getLowestFloor(), zone.getId(), passengerPool);
+        elevator.setFloorDemand(this);
+        elevator.setEventBus(eventBus);
+        elevator.setPassengerListener((floor, people) -> tripStatistics.onAlighted(people));
+        return elevator;
+    }
+
+    private Controller createController(int dispatchThreads, int dispatchQueueCapacity) {
+        List<Elevator> elevators = new ArrayList<>();
+        for (Zone zone : zones) {
+            for (int i = 0; i < zone.getElevatorsNumber(); i++) {
+                elevators.add(createElevator(zone));
+            }
+        }
+        return new Controller(elevators, isRunning, dispatchThreads, dispatchQueueCapacity);
+    }
+
+    private Zone getZone(int zoneId) {
+        checkArgument(zoneId >= 0 && zoneId < zones.size(), "No zone %s", zoneId);
+        return zones.get(zoneId);
+    }
+
+    public List<Elevator> getElevators() {
+        return controller.getElevators();
+    }
+
+    /* Live reconfiguration: every change takes effect between the trips and stops of the elevators */
+
+    //the new elevator starts on the lowest floor of the zone with the current settings
+    public synchronized Elevator addElevator(int zoneId) {
+        checkState(isRunning, "The simulation is stopped");
+        Elevator elevator = createElevator(getZone(zoneId));
+        controller.addElevator(elevator);
+        return elevator;
+    }
+
+    //the elevator delivers its passengers before it stops
+    public synchronized void removeElevator(int id) {
+        checkState(isRunning, "The simulation is stopped");
+        controller.removeElevator(id);
+    }
+
+    //elevators are added or the last added ones are removed, the zone keeps at least one elevator
+    public synchronized void setElevatorsNumber(int zoneId, int elevatorsNumber) {
+        checkArgument(elevatorsNumber > 0, "Zone %s has no elevators", zoneId);
+        List<Elevator> zoneElevators = new ArrayList<>();
+        for (Elevator elevator : controller.getElevators()) {
+            if (elevator.getZoneId() == zoneId) {
+                zoneElevators.add(elevator);
+            }
+        }
+        for (int i = zoneElevators.size(); i < elevatorsNumber; i++) {
+            addElevator(zoneId);
+        }
+        for (int i = zoneElevators.size() - 1; i >= elevatorsNumber; i--) {
+            removeElevator(zoneElevators.get(i).getId());
+        }
+    }
+
+    //the settings of all the elevators are replaced, each elevator takes them from its next trip or stop
+    public synchronized void setElevatorSettings(ElevatorSettings elevatorSettings) {
+        checkNotNull(elevatorSettings);
+        checkArgument(elevatorSettings.getFlightTimeTable().getMaxDistance() >= MAX_FLOOR - MIN_FLOOR,
+                "Flight time table is too short");
+        this.elevatorSettings = elevatorSettings;
+        controller.getElevators().forEach(elevator -> elevator.setSettings(elevatorSettings));
+        log.info("Elevator settings are changed: {}", elevatorSettings);
+    }
+
+    //null disables parking, the new policy starts without the arrival rates of the old one
+    public synchronized void setParkingPolicy(ParkingPolicy parkingPolicy) {
+        this.parkingPolicy = parkingPolicy;
+        controller.setParkingPolicy(parkingPolicy);
+        log.info("Parking policy is {}", Objects.isNull(parkingPolicy) ? "disabled" : "changed");
+    }
+
+    //null means the elevator which arrives first is called
+    public void setDispatchPolicyTable(DispatchPolicyTable dispatchPolicyTable) {
+        controller.setDispatchPolicyTable(dispatchPolicyTable);
+        log.info("Dispatch policy table: {}", dispatchPolicyTable);
+    }
+}
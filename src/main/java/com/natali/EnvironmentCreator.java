@@ -1,68 +1,161 @@
-package com.natali;
-
-import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Objects;
-import java.util.Properties;
-
-import static java.util.Objects.requireNonNull;
-
-@Slf4j
-public class EnvironmentCreator {
-    private static final int SPAWN_INTERVAL = 1000;
-    private static final int MAX_FLOOR = 10;
-    private static final int MIN_FLOOR = 1;
-    private static final int ELEVATORS_NUMBER = 2;
-    private static final int TIME_TO_OPEN_THE_DOOR = 10;
-    private static final int TIME_TO_CLOSE_THE_DOOR = 10;
-    private static final int TIME_TO_PASS_THE_FLOOR = 110;
-    private static final int BEARING_CAPACITY = 400;
-
-
-    public Environment createFromFile(String propertiesFile) {
-        InputStream inputStream = null;
-        int spawnTime, maxFloor, minFloor, elevatorNumber, timeToOpen, timeToClose, timeToPass, bearingCapacity;
-        try {
-            Properties prop = new Properties();
-
-            inputStream = Runner.class.getClassLoader().getResourceAsStream(propertiesFile);
-
-            if (inputStream != null) {
-                prop.load(inputStream);
-            } else {
-                return null;
-            }
-            minFloor = Integer.parseInt(prop.getProperty("groundFloor"));
-            maxFloor = Integer.parseInt(prop.getProperty("upperFloor"));
-            elevatorNumber = Integer.parseInt(prop.getProperty("elevatorsNumber"));
-            spawnTime = Integer.parseInt(prop.getProperty("personSpawnInterval"));
-            timeToPass = Integer.parseInt(prop.getProperty("timeToPassAFloor"));
-            timeToClose = Integer.parseInt(prop.getProperty("timeToOpenTheDoor"));
-            timeToOpen = Integer.parseInt(prop.getProperty("timeToCloseTheDoor"));
-            bearingCapacity = Integer.parseInt(prop.getProperty("bearingCapacity"));
-        } catch (Exception e) {
-            log.warn("Impossible to read properties file", e);
-            return null;
-        } finally {
-            try {
-                if (!Objects.isNull(inputStream)) {
-                    (inputStream).close();
-                }
-            } catch (IOException e) {
-                log.warn("Impossible to close input stream", e);
-                return null;
-            }
-        }
-        return new Environment(spawnTime, maxFloor, minFloor,
-                elevatorNumber, timeToOpen, timeToClose, timeToPass, bearingCapacity);
-    }
-
-    public Environment createDefault() {
-        return new Environment(SPAWN_INTERVAL, MAX_FLOOR, MIN_FLOOR, ELEVATORS_NUMBER,
-                TIME_TO_OPEN_THE_DOOR, TIME_TO_CLOSE_THE_DOOR, TIME_TO_PASS_THE_FLOOR, BEARING_CAPACITY);
-    }
-}
+package com.natali;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+@Slf4j
+public class EnvironmentCreator {
+    private static final int SPAWN_INTERVAL = 1000;
+    private static final int MAX_FLOOR = 10;
+    private static final int MIN_FLOOR = 1;
+    private static final int ELEVATORS_NUMBER = 2;
+    private static final int TIME_TO_OPEN_THE_DOOR = 10;
+    private static final int TIME_TO_CLOSE_THE_DOOR = 10;
+    private static final int TIME_TO_PASS_THE_FLOOR = 110;
+    private static final int BEARING_CAPACITY = 400;
+    private static final int ARRIVAL_RATE_HALF_LIFE = 60000;
+
+
+    public Properties readProperties(String propertiesFile) {
+        InputStream inputStream = null;
+        Properties prop = new Properties();
+        try {
+            inputStream = Runner.class.getClassLoader().getResourceAsStream(propertiesFile);
+
+            if (inputStream != null) {
+                prop.load(inputStream);
+            } else {
+                return null;
+            }
+        } catch (Exception e) {
+            log.warn("Impossible to read properties file", e);
+            return null;
+        } finally {
+            try {
+                if (!Objects.isNull(inputStream)) {
+                    (inputStream).close();
+                }
+            } catch (IOException e) {
+                log.warn("Impossible to close input stream", e);
+                return null;
+            }
+        }
+        return prop;
+    }
+
+    public Environment createFromFile(String propertiesFile) {
+        Properties prop = readProperties(propertiesFile);
+        return Objects.isNull(prop) ? null : createFromProperties(prop);
+    }
+
+    //the table of the dispatchPolicyTable file or null if the property is not set
+    public DispatchPolicyTable readDispatchPolicyTable(Properties prop) throws IOException {
+        String fileName = prop.getProperty("dispatchPolicyTable");
+        return Objects.isNull(fileName) ? null : DispatchPolicyTable.load(fileName);
+    }
+
+    public Environment createFromProperties(Properties prop) {
+        DispatchPolicyTable dispatchPolicyTable;
+        try {
+            dispatchPolicyTable = readDispatchPolicyTable(prop);
+        } catch (Exception e) {
+            log.warn("Impossible to read dispatch policy table", e);
+            return null;
+        }
+        return createFromProperties(prop, dispatchPolicyTable);
+    }
+
+    public List<Zone> readZones(Properties prop) {
+        int minFloor = Integer.parseInt(prop.getProperty("groundFloor"));
+        int maxFloor = Integer.parseInt(prop.getProperty("upperFloor"));
+        return prop.containsKey("zones")
+                ? Zone.parseLayout(prop.getProperty("zones"), minFloor, maxFloor)
+                : Zone.singleZone(minFloor, maxFloor, Integer.parseInt(prop.getProperty("elevatorsNumber")));
+    }
+
+    //timings and capacity of the cars, the same for all the elevators of the building
+    public ElevatorSettings readElevatorSettings(Properties prop) {
+        int minFloor = Integer.parseInt(prop.getProperty("groundFloor"));
+        int maxFloor = Integer.parseInt(prop.getProperty("upperFloor"));
+        DwellModel dwellModel = new DwellModel(Integer.parseInt(prop.getProperty("transferTimePerPerson", "0")),
+                Integer.parseInt(prop.getProperty("minDwellTime", "0")),
+                Integer.parseInt(prop.getProperty("maxDwellTime", "0")));
+        //the motion model of the car type, the constant time to pass a floor if it is not set
+        FlightTimeTable flightTimeTable = prop.containsKey("maxSpeed")
+                ? FlightTimeTable.kinematic(Double.parseDouble(prop.getProperty("floorHeight")),
+                Double.parseDouble(prop.getProperty("maxSpeed")),
+                Double.parseDouble(prop.getProperty("acceleration")),
+                Double.parseDouble(prop.getProperty("jerk")), maxFloor - minFloor)
+                : FlightTimeTable.linear(Integer.parseInt(prop.getProperty("timeToPassAFloor")), maxFloor - minFloor);
+        log.info("Flight time table: {}", flightTimeTable);
+        return new ElevatorSettings(Integer.parseInt(prop.getProperty("timeToOpenTheDoor")),
+                Integer.parseInt(prop.getProperty("timeToCloseTheDoor")), dwellModel, flightTimeTable,
+                Integer.parseInt(prop.getProperty("bearingCapacity")));
+    }
+
+    //null if parking is not enabled
+    public ParkingPolicy readParkingPolicy(Properties prop, List<Zone> zones) {
+        if (!Boolean.parseBoolean(prop.getProperty("parkingEnabled"))) {
+            return null;
+        }
+        return new ParkingPolicy(zones, ParkingPolicy.parseHomeFloors(prop.getProperty("parkingFloors", "")),
+                Long.parseLong(prop.getProperty("arrivalRateHalfLife", String.valueOf(ARRIVAL_RATE_HALF_LIFE))));
+    }
+
+    //an empty value turns the file off
+    private static String readFileName(Properties prop, String key, String defaultFileName) {
+        String fileName = prop.getProperty(key, defaultFileName).trim();
+        return fileName.isEmpty() ? null : fileName;
+    }
+
+    public Environment createFromProperties(Properties prop, DispatchPolicyTable dispatchPolicyTable) {
+        int spawnTime, maxFloor, minFloor, elevatorNumber;
+        int dispatchThreads, dispatchQueueCapacity;
+        List<Zone> zones;
+        ParkingPolicy parkingPolicy;
+        ElevatorSettings elevatorSettings;
+        Random random;
+        TrafficProfile trafficProfile;
+        try {
+            minFloor = Integer.parseInt(prop.getProperty("groundFloor"));
+            maxFloor = Integer.parseInt(prop.getProperty("upperFloor"));
+            elevatorNumber = Integer.parseInt(prop.getProperty("elevatorsNumber"));
+            spawnTime = Integer.parseInt(prop.getProperty("personSpawnInterval"));
+            dispatchThreads = Integer.parseInt(prop.getProperty("dispatchThreads",
+                    String.valueOf(Controller.DISPATCH_THREADS)));
+            dispatchQueueCapacity = Integer.parseInt(prop.getProperty("dispatchQueueCapacity",
+                    String.valueOf(Controller.DISPATCH_QUEUE_CAPACITY)));
+            zones = readZones(prop);
+            elevatorSettings = readElevatorSettings(prop);
+            parkingPolicy = readParkingPolicy(prop, zones);
+            random = prop.containsKey("seed") ? new Random(Long.parseLong(prop.getProperty("seed"))) : new Random();
+            trafficProfile = TrafficProfile.valueOf(prop.getProperty("trafficProfile",
+                    TrafficProfile.Uniform.name()));
+        } catch (Exception e) {
+            log.warn("Impossible to read properties", e);
+            return null;
+        }
+        return new Environment(spawnTime, maxFloor, minFloor, elevatorNumber,
+                elevatorSettings.getTimeToOpenTheDoor(), elevatorSettings.getTimeToCloseTheDoor(),
+                elevatorSettings.getBearingCapacity(), dispatchThreads, dispatchQueueCapacity, zones, parkingPolicy,
+                elevatorSettings.getDwellModel(), elevatorSettings.getFlightTimeTable(),
+                random, trafficProfile, dispatchPolicyTable,
+                readFileName(prop, "statisticsFile", Environment.STATISTICS_FILE),
+                readFileName(prop, "statisticsStore", Environment.STATISTICS_STORE_FILE));
+    }
+
+    public Environment createDefault() {
+        return new Environment(SPAWN_INTERVAL, MAX_FLOOR, MIN_FLOOR, ELEVATORS_NUMBER,
+                TIME_TO_OPEN_THE_DOOR, TIME_TO_CLOSE_THE_DOOR, TIME_TO_PASS_THE_FLOOR, BEARING_CAPACITY);
+    }
+}
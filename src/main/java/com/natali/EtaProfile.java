@@ -0,0 +1,144 @@
+package com.natali;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimated time for an elevator to arrive on every floor for a call of every direction, ms.
+ * The elevator goes on in its direction serving its stops, turns at the last stop and serves the stops
+ * behind it, then turns once more. Every stop takes stopTime, every leg takes the flight time of the car.
+ * The profile is rebuilt on the first query after the elevator changed, so a query is an array read
+ * while the elevator keeps its state.
+ */
+class EtaProfile {
+    private final int minFloor;
+    private final int maxFloor;
+    private final FlightTimeTable flightTimeTable;
+    private final int stopTime;
+
+    private final int[] upTimes;
+    private final int[] downTimes;
+    private final int[] firstSweep;
+    private final int[] secondSweep;
+    private final boolean[] isStop;
+
+    //the profile is valid while builtVersion == version
+    private final AtomicLong version;
+    private long builtVersion;
+
+    EtaProfile(int minFloor, int maxFloor, FlightTimeTable flightTimeTable, int stopTime) {
+        this.minFloor = minFloor;
+        this.maxFloor = maxFloor;
+        this.flightTimeTable = flightTimeTable;
+        this.stopTime = stopTime;
+        int floorsNumber = maxFloor - minFloor + 1;
+        upTimes = new int[floorsNumber];
+        downTimes = new int[floorsNumber];
+        firstSweep = new int[floorsNumber];
+        secondSweep = new int[floorsNumber];
+        isStop = new boolean[floorsNumber];
+        version = new AtomicLong();
+        builtVersion = -1;
+    }
+
+    //called after every change of the elevator state
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param stateVersion the version read before the state of the elevator, a change made while the state
+     *                     is read moves the version on, so the next query rebuilds the profile again
+     * @param stops        the floors the elevator is going to stop at
+     * @param targetFloor  the floor the elevator is moving to if it is not in stops, or null
+     */
+    synchronized int get(int floor, Direction direction, long stateVersion, int currentFloor,
+                         Direction actualDirection, Set<Integer> stops, Integer targetFloor) {
+        if (builtVersion != stateVersion) {
+            rebuild(currentFloor, actualDirection, stops, targetFloor);
+            builtVersion = stateVersion;
+        }
+        return direction == Direction.Down ? downTimes[floor - minFloor] : upTimes[floor - minFloor];
+    }
+
+    private int flight(int from, int to) {
+        return flightTimeTable.getFlightTime(to - from);
+    }
+
+    private boolean isInBuilding(int floor) {
+        return floor >= minFloor && floor <= maxFloor;
+    }
+
+    private void rebuild(int currentFloor, Direction actualDirection, Set<Integer> stops, Integer targetFloor) {
+        Arrays.fill(isStop, false);
+        for (Integer stop : stops) {
+            if (isInBuilding(stop)) {
+                isStop[stop - minFloor] = true;
+            }
+        }
+        if (targetFloor != null && isInBuilding(targetFloor)) {
+            isStop[targetFloor - minFloor] = true;
+        }
+        int floor;
+        if (actualDirection == Direction.Idle) {
+            for (floor = minFloor; floor <= maxFloor; floor++) {
+                upTimes[floor - minFloor] = flight(currentFloor, floor);
+                downTimes[floor - minFloor] = upTimes[floor - minFloor];
+            }
+            return;
+        }
+        int step = actualDirection == Direction.Up ? 1 : -1;
+        int[] alongTimes = step > 0 ? upTimes : downTimes;
+        int[] againstTimes = step > 0 ? downTimes : upTimes;
+
+        //the first sweep: on in the direction of the elevator serving the stops ahead
+        int time = 0;
+        int position = currentFloor;
+        for (floor = currentFloor + step; isInBuilding(floor); floor += step) {
+            firstSweep[floor - minFloor] = time + flight(position, floor);
+            if (isStop[floor - minFloor]) {
+                time = firstSweep[floor - minFloor] + stopTime;
+                position = floor;
+            }
+        }
+        int firstTurn = position;
+        //the second sweep: back from the last stop ahead serving the stops behind
+        for (floor = firstTurn; isInBuilding(floor); floor -= step) {
+            secondSweep[floor - minFloor] = time + flight(position, floor);
+            if ((floor - currentFloor) * step < 0 && isStop[floor - minFloor]) {
+                time = secondSweep[floor - minFloor] + stopTime;
+                position = floor;
+            }
+        }
+        int secondTurn = position;
+
+        for (floor = minFloor; floor <= maxFloor; floor++) {
+            //a call of the elevator direction: ahead it is taken on the way, behind - after the second turn
+            if ((floor - currentFloor) * step > 0) {
+                alongTimes[floor - minFloor] = firstSweep[floor - minFloor];
+            } else if ((floor - secondTurn) * step < 0) {
+                alongTimes[floor - minFloor] = secondSweep[floor - minFloor];
+            } else {
+                alongTimes[floor - minFloor] = time + flight(secondTurn, floor);
+            }
+            //a call of the other direction: beyond the last stop ahead the elevator turns on the call floor
+            if (firstTurn != currentFloor && (floor - firstTurn) * step >= 0) {
+                againstTimes[floor - minFloor] = firstSweep[floor - minFloor];
+            } else if ((floor - currentFloor) * step <= 0) {
+                againstTimes[floor - minFloor] = secondSweep[floor - minFloor];
+            } else if (secondTurn == currentFloor) {
+                //no stops at all, e.g. the elevator has just arrived for a call of the other direction:
+                //it finishes the stop and goes back ahead
+                againstTimes[floor - minFloor] = stopTime + flight(currentFloor, floor);
+            } else {
+                //no stops ahead: the stops behind are served first
+                againstTimes[floor - minFloor] = time + flight(secondTurn, floor);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.natali;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Precomputed travel time for every trip length of a car type, so both the elevator and the dispatcher
+ * pay only an array read. The kinematic table follows the jerk-limited S-curve: the car accelerates with
+ * limited jerk up to the max acceleration and the max speed, and brakes symmetrically.
+ */
+public class FlightTimeTable {
+    private static final int MILLISECONDS_IN_SECOND = 1000;
+    private static final int SEARCH_ITERATIONS = 100;
+
+    //time in milliseconds for a trip of i floors
+    private final int[] flightTimes;
+
+    private FlightTimeTable(int[] flightTimes) {
+        this.flightTimes = flightTimes;
+    }
+
+    public static FlightTimeTable linear(int timeOneFloorPath, int maxDistance) {
+        checkArgument(timeOneFloorPath >= 0);
+        checkArgument(maxDistance >= 0);
+        int[] flightTimes = new int[maxDistance + 1];
+        for (int i = 0; i <= maxDistance; i++) {
+            flightTimes[i] = i * timeOneFloorPath;
+        }
+        return new FlightTimeTable(flightTimes);
+    }
+
+    /**
+     * @param floorHeight  meters
+     * @param maxSpeed     meters per second
+     * @param acceleration meters per second squared
+     * @param jerk         meters per second cubed
+     */
+    public static FlightTimeTable kinematic(double floorHeight, double maxSpeed, double acceleration, double jerk,
+                                            int maxDistance) {
+        checkArgument(floorHeight > 0 && maxSpeed > 0 && acceleration > 0 && jerk > 0,
+                "Motion parameters must be positive");
+        checkArgument(maxDistance >= 0);
+        int[] flightTimes = new int[maxDistance + 1];
+        for (int i = 1; i <= maxDistance; i++) {
+            flightTimes[i] = (int) Math.round(MILLISECONDS_IN_SECOND
+                    * getFlightTime(i * floorHeight, maxSpeed, acceleration, jerk));
+        }
+        return new FlightTimeTable(flightTimes);
+    }
+
+    //the acceleration reached on the way to the given speed
+    private static double getPeakAcceleration(double speed, double acceleration, double jerk) {
+        return Math.min(acceleration, Math.sqrt(speed * jerk));
+    }
+
+    //time to reach the given speed from standstill
+    private static double getSpeedUpTime(double speed, double acceleration, double jerk) {
+        double peakAcceleration = getPeakAcceleration(speed, acceleration, jerk);
+        return speed / peakAcceleration + peakAcceleration / jerk;
+    }
+
+    private static double getFlightTime(double distance, double maxSpeed, double acceleration, double jerk) {
+        double speedUpTime = getSpeedUpTime(maxSpeed, acceleration, jerk);
+        //speeding up and braking cover speed * speedUpTime together
+        if (distance >= maxSpeed * speedUpTime) {
+            return distance / maxSpeed + speedUpTime;
+        }
+        //the max speed is not reached, find the peak speed of the trip
+        double low = 0;
+        double high = maxSpeed;
+        double speed;
+        for (int i = 0; i < SEARCH_ITERATIONS; i++) {
+            speed = (low + high) / 2;
+            if (speed * getSpeedUpTime(speed, acceleration, jerk) < distance) {
+                low = speed;
+            } else {
+                high = speed;
+            }
+        }
+        return 2 * getSpeedUpTime(high, acceleration, jerk);
+    }
+
+    public int getMaxDistance() {
+        return flightTimes.length - 1;
+    }
+
+    public int getFlightTime(int floors) {
+        return flightTimes[Math.min(Math.abs(floors), flightTimes.length - 1)];
+    }
+
+    //the time of one floor of a trip, the sum over the trip is the flight time of the whole trip
+    public int getFloorPassTime(int tripLength) {
+        return tripLength == 0 ? 0 : getFlightTime(tripLength) / tripLength;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(flightTimes);
+    }
+}
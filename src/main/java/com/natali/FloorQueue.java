@@ -0,0 +1,80 @@
+package com.natali;
+
+/**
+ * Queue of people waiting on a floor for one direction, keeps handles of the passenger pool
+ * in a ring buffer and the total weight of the queue.
+ */
+class FloorQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final PassengerPool passengerPool;
+    private int[] handles;
+    private int head;
+    private int size;
+    private int totalWeight;
+    //the capacity assigned to the queue when the last call was sent
+    private int calledCapacity;
+
+    FloorQueue(PassengerPool passengerPool) {
+        this.passengerPool = passengerPool;
+        handles = new int[INITIAL_CAPACITY];
+    }
+
+    synchronized void add(int handle) {
+        if (size == handles.length) {
+            int[] grown = new int[handles.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = handles[(head + i) % handles.length];
+            }
+            handles = grown;
+            head = 0;
+        }
+        handles[(head + size) % handles.length] = handle;
+        size++;
+        totalWeight += passengerPool.getWeight(handle);
+    }
+
+    synchronized int peek() {
+        return size == 0 ? PassengerPool.NO_PASSENGER : handles[head];
+    }
+
+    synchronized int poll() {
+        if (size == 0) {
+            return PassengerPool.NO_PASSENGER;
+        }
+        int handle = handles[head];
+        head = (head + 1) % handles.length;
+        size--;
+        totalWeight -= passengerPool.getWeight(handle);
+        return handle;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized int getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * The first person calls an elevator, a growing crowd calls one more as soon as the assigned capacity
+     * cannot take it. The calls are coalesced: while the last call is not assigned yet the capacity stays
+     * what it was at that call, so the next arrivals do not send the same call again.
+     */
+    synchronized boolean needsCall(int assignedCapacity) {
+        if (size != 1 && (totalWeight <= assignedCapacity || assignedCapacity == calledCapacity)) {
+            return false;
+        }
+        calledCapacity = assignedCapacity;
+        return true;
+    }
+
+    synchronized int getFirstPersonWeight() {
+        return size == 0 ? 0 : passengerPool.getWeight(handles[head]);
+    }
+}
@@ -0,0 +1,41 @@
+package com.natali;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of passenger handles without boxing, the order of handles is not kept on removal.
+ */
+class HandleList {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] handles;
+    private int size;
+
+    HandleList() {
+        handles = new int[INITIAL_CAPACITY];
+    }
+
+    void add(int handle) {
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, handles.length * 2);
+        }
+        handles[size++] = handle;
+    }
+
+    int get(int index) {
+        return handles[index];
+    }
+
+    //the last handle takes the place of the removed one
+    void removeAt(int index) {
+        handles[index] = handles[--size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(handles, size);
+    }
+}
@@ -0,0 +1,115 @@
+package com.natali;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with logarithmic buckets.
+ * Every power of two is split into {@value #SUB_BUCKETS} sub-buckets, so a percentile
+ * is reported with an error of at most 12.5%. {@link TimeSeriesStore} keeps its sketches in coarser buckets
+ * of the same kind.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_NUMBER = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public Histogram() {
+        buckets = new AtomicLongArray(BUCKETS_NUMBER);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    static int bucketIndex(long value) {
+        return bucketIndex(value, SUB_BUCKET_BITS);
+    }
+
+    //every power of two is split into 2^subBucketBits sub-buckets
+    static int bucketIndex(long value, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - subBucketBits)) & (subBuckets - 1));
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        return bucketLowerBound(index, SUB_BUCKET_BITS);
+    }
+
+    static long bucketLowerBound(int index, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (index < subBuckets) {
+            return index;
+        }
+        int exponent = index / subBuckets + subBucketBits - 1;
+        long subBucket = index % subBuckets;
+        return (subBuckets + subBucket) << (exponent - subBucketBits);
+    }
+
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * @param percentile value in range from 0 to 100
+     * @return upper bound of the bucket containing the requested percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS_NUMBER];
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long upperBound = i + 1 < BUCKETS_NUMBER ? bucketLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upperBound, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d",
+                getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(99), getMax());
+    }
+}
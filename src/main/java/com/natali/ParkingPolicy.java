@@ -0,0 +1,128 @@
+package com.natali;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Chooses home floors for idle elevators. Configured home floors of a zone are taken in the given order,
+ * otherwise the floors of the zone are ranked by the rolling arrival rate. Every home floor is given
+ * to one elevator of the zone only, so idle elevators are spread over the zone.
+ */
+public class ParkingPolicy {
+    private static final String HOME_FLOORS_SEPARATOR = ";";
+    private static final String FLOORS_SEPARATOR = ",";
+
+    private final Map<Integer, Zone> zones;
+    private final Map<Integer, List<Integer>> homeFloors;
+    private final Map<Integer, ArrivalRateTracker> arrivalRates;
+    //elevator - home floor the elevator is parked at or is going to
+    private final Map<Elevator, Integer> reservations;
+
+    public ParkingPolicy(List<Zone> zones, Map<Integer, List<Integer>> homeFloors, long halfLife) {
+        checkNotNull(zones);
+        checkNotNull(homeFloors);
+        this.zones = new HashMap<>();
+        this.homeFloors = homeFloors;
+        arrivalRates = new HashMap<>();
+        reservations = new HashMap<>();
+        for (Zone zone : zones) {
+            this.zones.put(zone.getId(), zone);
+            arrivalRates.put(zone.getId(),
+                    new ArrivalRateTracker(zone.getLowestFloor(), zone.getHighestFloor(), halfLife));
+            homeFloors.getOrDefault(zone.getId(), List.of()).forEach(floor -> checkArgument(zone.serves(floor),
+                    "Zone %s does not serve home floor %s", zone.getId(), floor));
+        }
+    }
+
+    /**
+     * @param description home floors of zones separated by ';', e.g. "1,5;1,8", an empty zone means
+     *                    the floors are predicted from the arrival rate
+     */
+    public static Map<Integer, List<Integer>> parseHomeFloors(String description) {
+        Map<Integer, List<Integer>> homeFloors = new HashMap<>();
+        String[] zonesFloors = description.split(HOME_FLOORS_SEPARATOR);
+        for (int zoneId = 0; zoneId < zonesFloors.length; zoneId++) {
+            if (zonesFloors[zoneId].isBlank()) {
+                continue;
+            }
+            List<Integer> floors = new ArrayList<>();
+            for (String floor : zonesFloors[zoneId].split(FLOORS_SEPARATOR)) {
+                floors.add(Integer.parseInt(floor.trim()));
+            }
+            homeFloors.put(zoneId, floors);
+        }
+        return homeFloors;
+    }
+
+    public void onArrival(int zoneId, int floor, Direction direction) {
+        arrivalRates.get(zoneId).onArrival(floor, direction, System.currentTimeMillis());
+    }
+
+    private List<Integer> rankFloors(int zoneId, long now) {
+        List<Integer> configured = homeFloors.get(zoneId);
+        if (!Objects.isNull(configured)) {
+            return configured;
+        }
+        Zone zone = zones.get(zoneId);
+        ArrivalRateTracker arrivalRate = arrivalRates.get(zoneId);
+        Map<Integer, Double> rates = new HashMap<>();
+        for (int floor = zone.getLowestFloor(); floor <= zone.getHighestFloor(); floor++) {
+            if (zone.serves(floor)) {
+                rates.put(floor, arrivalRate.getRate(floor, Direction.Idle, now));
+            }
+        }
+        return rates.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the best home floor which is not taken by other elevators of the zone or null
+     * if there is nothing to choose from
+     */
+    public synchronized Integer chooseHomeFloor(Elevator elevator) {
+        long now = System.currentTimeMillis();
+        Set<Integer> takenFloors = reservations.entrySet().stream()
+                .filter(e -> e.getKey() != elevator && e.getKey().getZoneId() == elevator.getZoneId())
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toSet());
+        for (Integer floor : rankFloors(elevator.getZoneId(), now)) {
+            if (!takenFloors.contains(floor)) {
+                reservations.put(elevator, floor);
+                return floor;
+            }
+        }
+        reservations.remove(elevator);
+        return null;
+    }
+
+    //the direction most people go from the home floor, the parked elevator waits for them
+    public Direction getPreferredDirection(int zoneId, int floor) {
+        Zone zone = zones.get(zoneId);
+        if (floor == zone.getLowestFloor()) {
+            return Direction.Up;
+        } else if (floor == zone.getHighestFloor()) {
+            return Direction.Down;
+        }
+        long now = System.currentTimeMillis();
+        ArrivalRateTracker arrivalRate = arrivalRates.get(zoneId);
+        return arrivalRate.getRate(floor, Direction.Up, now) >= arrivalRate.getRate(floor, Direction.Down, now)
+                ? Direction.Up : Direction.Down;
+    }
+
+    public synchronized void release(Elevator elevator) {
+        reservations.remove(elevator);
+    }
+}
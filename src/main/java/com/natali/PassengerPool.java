@@ -0,0 +1,118 @@
+package com.natali;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Passengers kept in primitive arrays and referred to by int handles, about 24 bytes per passenger.
+ * Handles of delivered passengers are released and reused. The arrays are split into pages which are
+ * allocated on demand and never moved, so the pool grows without copying. A handle is allocated under
+ * the lock of the pool and passed to other threads through synchronized queues, which publishes its fields.
+ */
+public class PassengerPool {
+    public static final int NO_PASSENGER = -1;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 14;
+    private static final int FLOOR_BITS = 16;
+    private static final int FLOOR_MASK = (1 << FLOOR_BITS) - 1;
+    private static final int INITIAL_FREE_CAPACITY = 64;
+
+    private final int[][] weights;
+    //start floor in the high 16 bits, target floor in the low 16 bits
+    private final int[][] routes;
+    //System.nanoTime() of the appearance on the start floor and of the boarding
+    private final long[][] appearanceTimes;
+    private final long[][] boardingTimes;
+
+    private int[] freeHandles;
+    private int freeHandlesNumber;
+    //handles from this one on were never allocated
+    private int nextHandle;
+    private int size;
+
+    public PassengerPool() {
+        weights = new int[MAX_PAGES][];
+        routes = new int[MAX_PAGES][];
+        appearanceTimes = new long[MAX_PAGES][];
+        boardingTimes = new long[MAX_PAGES][];
+        freeHandles = new int[INITIAL_FREE_CAPACITY];
+    }
+
+    private static int page(int handle) {
+        return handle >>> PAGE_BITS;
+    }
+
+    private static int offset(int handle) {
+        return handle & PAGE_MASK;
+    }
+
+    public synchronized int allocate(int weight, int startFloor, int targetFloor, long appearanceTime) {
+        checkArgument(startFloor == (short) startFloor && targetFloor == (short) targetFloor,
+                "Floor number is out of range");
+        int handle;
+        if (freeHandlesNumber > 0) {
+            handle = freeHandles[--freeHandlesNumber];
+        } else {
+            checkState(nextHandle < MAX_PAGES * PAGE_SIZE, "Passenger pool is full");
+            handle = nextHandle++;
+            if (offset(handle) == 0) {
+                weights[page(handle)] = new int[PAGE_SIZE];
+                routes[page(handle)] = new int[PAGE_SIZE];
+                appearanceTimes[page(handle)] = new long[PAGE_SIZE];
+                boardingTimes[page(handle)] = new long[PAGE_SIZE];
+            }
+        }
+        weights[page(handle)][offset(handle)] = weight;
+        routes[page(handle)][offset(handle)] = (startFloor << FLOOR_BITS) | (targetFloor & FLOOR_MASK);
+        appearanceTimes[page(handle)][offset(handle)] = appearanceTime;
+        boardingTimes[page(handle)][offset(handle)] = 0;
+        size++;
+        return handle;
+    }
+
+    public synchronized void release(int handle) {
+        checkArgument(handle >= 0 && handle < nextHandle, "Unknown passenger: %s", handle);
+        if (freeHandlesNumber == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+        }
+        freeHandles[freeHandlesNumber++] = handle;
+        size--;
+    }
+
+    //passengers which are allocated and not released
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getWeight(int handle) {
+        return weights[page(handle)][offset(handle)];
+    }
+
+    public int getStartFloor(int handle) {
+        return routes[page(handle)][offset(handle)] >> FLOOR_BITS;
+    }
+
+    public int getTargetFloor(int handle) {
+        return (short) routes[page(handle)][offset(handle)];
+    }
+
+    public Direction getDirection(int handle) {
+        return getTargetFloor(handle) > getStartFloor(handle) ? Direction.Up : Direction.Down;
+    }
+
+    public long getAppearanceTime(int handle) {
+        return appearanceTimes[page(handle)][offset(handle)];
+    }
+
+    public long getBoardingTime(int handle) {
+        return boardingTimes[page(handle)][offset(handle)];
+    }
+
+    public void setBoardingTime(int handle, long boardingTime) {
+        boardingTimes[page(handle)][offset(handle)] = boardingTime;
+    }
+}
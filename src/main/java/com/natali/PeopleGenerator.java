@@ -1,53 +1,78 @@
-package com.natali;
-
-import lombok.extern.slf4j.Slf4j;
-
-import java.util.Random;
-import java.util.function.Consumer;
-
-@Slf4j
-public class PeopleGenerator implements Runnable {
-    private final int TIME_INTERVAL;
-
-    private final int MAX_FLOOR;
-
-    private final int MIN_FLOOR;
-    private static final int MAX_WEIGHT = 150;
-    private static final int MIN_WEIGHT = 20;
-    private volatile boolean isRunning;
-    private final Consumer<Person> addPerson;
-
-
-    public PeopleGenerator(int TIME_INTERVAL, int MAX_FLOOR, int MIN_FLOOR, Consumer<Person> addPerson) {
-        this.TIME_INTERVAL = TIME_INTERVAL;
-        this.MAX_FLOOR = MAX_FLOOR;
-        this.MIN_FLOOR = MIN_FLOOR;
-        this.addPerson = addPerson;
-        isRunning = true;
-    }
-
-    public void run() {
-        Random random = new Random();
-        int floor, targetFloor;
-        Direction direction;
-        Person person;
-
-        while (isRunning) {
-            floor = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
-
-            do {
-                targetFloor = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
-            } while (targetFloor == floor);
-
-            direction = floor > targetFloor ? Direction.Down : Direction.Up;
-            person = new Person(random.nextInt(MAX_WEIGHT - MIN_WEIGHT) + MIN_WEIGHT,
-                    targetFloor, floor, direction);
-            addPerson.accept(person);
-            try {
-                Thread.sleep(TIME_INTERVAL);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-}
+package com.natali;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Random;
+import java.util.function.BiPredicate;
+import java.util.function.IntConsumer;
+
+@Slf4j
+public class PeopleGenerator implements Runnable {
+    private final int TIME_INTERVAL;
+
+    private final int MAX_FLOOR;
+
+    private final int MIN_FLOOR;
+    private static final int MAX_WEIGHT = 150;
+    private static final int MIN_WEIGHT = 20;
+    @Setter
+    private volatile boolean isRunning;
+    private final PassengerPool passengerPool;
+    //takes the handle of a new passenger
+    private final IntConsumer addPerson;
+    private final BiPredicate<Integer, Integer> isTripAvailable;
+    private final Random random;
+    private final TrafficProfile trafficProfile;
+
+
+    public PeopleGenerator(int TIME_INTERVAL, int MAX_FLOOR, int MIN_FLOOR, PassengerPool passengerPool,
+                           IntConsumer addPerson) {
+        this(TIME_INTERVAL, MAX_FLOOR, MIN_FLOOR, passengerPool, addPerson, (start, target) -> true);
+    }
+
+    //isTripAvailable tells whether some elevator goes from the start floor to the target floor
+    public PeopleGenerator(int TIME_INTERVAL, int MAX_FLOOR, int MIN_FLOOR, PassengerPool passengerPool,
+                           IntConsumer addPerson, BiPredicate<Integer, Integer> isTripAvailable) {
+        this(TIME_INTERVAL, MAX_FLOOR, MIN_FLOOR, passengerPool, addPerson, isTripAvailable, new Random(),
+                TrafficProfile.Uniform);
+    }
+
+    public PeopleGenerator(int TIME_INTERVAL, int MAX_FLOOR, int MIN_FLOOR, PassengerPool passengerPool,
+                           IntConsumer addPerson, BiPredicate<Integer, Integer> isTripAvailable, Random random,
+                           TrafficProfile trafficProfile) {
+        this.TIME_INTERVAL = TIME_INTERVAL;
+        this.MAX_FLOOR = MAX_FLOOR;
+        this.MIN_FLOOR = MIN_FLOOR;
+        this.passengerPool = passengerPool;
+        this.addPerson = addPerson;
+        this.isTripAvailable = isTripAvailable;
+        this.random = random;
+        this.trafficProfile = trafficProfile;
+        isRunning = true;
+    }
+
+    public void run() {
+        int floor, targetFloor;
+
+        while (isRunning) {
+            floor = trafficProfile.getStartFloor(random, MIN_FLOOR, MAX_FLOOR);
+
+            do {
+                targetFloor = trafficProfile.getTargetFloor(random, MIN_FLOOR, MAX_FLOOR);
+            } while (targetFloor == floor || !isTripAvailable.test(floor, targetFloor));
+
+            addPerson.accept(passengerPool.allocate(random.nextInt(MAX_WEIGHT - MIN_WEIGHT) + MIN_WEIGHT,
+                    floor, targetFloor, System.nanoTime()));
+            try {
+                Thread.sleep(TIME_INTERVAL);
+            } catch (InterruptedException e) {
+                //a stopped generator is interrupted to end at once
+                if (isRunning) {
+                    log.error("Thread {} was interrupted", Thread.currentThread().getId());
+                }
+                isRunning = false;
+            }
+        }
+    }
+}
@@ -1,21 +1,51 @@
-package com.natali;
-
-import java.util.Objects;
-
-public class Runner {
-    private static final String PROPERTY_FILE_NAME = "elevators_environment.properties";
-
-    private static void createEnvironment(){
-        EnvironmentCreator environmentCreator = new EnvironmentCreator();
-        Environment environment = environmentCreator.createFromFile(PROPERTY_FILE_NAME);
-        if (Objects.isNull(environment)){
-            environmentCreator.createDefault();
-        }
-
-    }
-
-
-    public static void main(String... args){
-        createEnvironment();
-    }
-}
+package com.natali;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Properties;
+
+public class Runner {
+    private static final String PROPERTY_FILE_NAME = "elevators_environment.properties";
+
+    private static void createEnvironment(){
+        EnvironmentCreator environmentCreator = new EnvironmentCreator();
+        Properties prop = environmentCreator.readProperties(PROPERTY_FILE_NAME);
+        Environment environment = Objects.isNull(prop) ? null : environmentCreator.createFromProperties(prop);
+        if (Objects.isNull(environment)){
+            environmentCreator.createDefault();
+            return;
+        }
+        watchConfiguration(environment, environmentCreator, prop);
+    }
+
+    //the changes of the watchConfiguration file are applied to the running simulation, see ConfigurationWatcher
+    private static void watchConfiguration(Environment environment, EnvironmentCreator environmentCreator,
+                                           Properties prop) {
+        String fileName = prop.getProperty("watchConfiguration");
+        if (Objects.isNull(fileName)) {
+            return;
+        }
+        try {
+            Thread watcher = new Thread(new ConfigurationWatcher(environment, environmentCreator, fileName, prop),
+                    "configuration-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            System.err.printf("Impossible to watch %s: %s%n", fileName, e.getMessage());
+        }
+    }
+
+
+    //"benchmark key=value..." runs the headless benchmark, see Benchmark,
+    //"train key=value..." searches the dispatch policy table, see DispatchPolicyTrainer
+    public static void main(String... args){
+        if (args.length > 0 && Benchmark.MODE.equals(args[0])) {
+            System.exit(Benchmark.run(PROPERTY_FILE_NAME, Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && DispatchPolicyTrainer.MODE.equals(args[0])) {
+            System.exit(DispatchPolicyTrainer.run(PROPERTY_FILE_NAME, Arrays.copyOfRange(args, 1, args.length)));
+        }
+        createEnvironment();
+    }
+}
@@ -1,73 +1,98 @@
-package com.natali;
-
-import lombok.Getter;
-
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import static com.google.common.base.Preconditions.checkArgument;
-import static java.lang.StrictMath.abs;
-
-public class StatisticProcessor {
-    private final int MIN_FLOOR;
-
-    private final int[] startFloorAmount;
-    private final int[] targetFloorAmount;
-
-    @Getter
-    private int totalWeight;
-    @Getter
-    private long totalTime;
-    @Getter
-    private int amountOfPassengers;
-    @Getter
-    private int totalFloorsPassed;
-
-    //temp
-    Map<Person, StatisticsPerson> personStatisticsTemp;
-
-    public StatisticProcessor(int minFloor, int maxFloor) {
-        checkArgument(maxFloor > minFloor, "");
-        MIN_FLOOR = minFloor;
-
-        personStatisticsTemp = new HashMap<>();
-        startFloorAmount = new int[maxFloor - minFloor + 1];
-        targetFloorAmount = new int[maxFloor - minFloor + 1];
-    }
-
-    public int[] getStartFloorAmount() {
-        return Arrays.copyOf(startFloorAmount, startFloorAmount.length);
-    }
-
-    public int[] getTargetFloorAmount() {
-        return Arrays.copyOf(targetFloorAmount, targetFloorAmount.length);
-    }
-
-    private void  initializePersonStatistics(Person person, int floor, LocalDateTime time) {
-        StatisticsPerson statisticsPerson = new StatisticsPerson(time, floor);
-        personStatisticsTemp.put(person, statisticsPerson);
-        startFloorAmount[floor - MIN_FLOOR] += 1;
-    }
-
-    private synchronized void addStatisticsInfo(Person person, int floor, LocalDateTime time) {
-        StatisticsPerson statisticsPerson = personStatisticsTemp.get(person);
-        long timePeriod = ChronoUnit.MILLIS.between(statisticsPerson.getStartTime(), time);
-        totalTime += timePeriod;
-        totalFloorsPassed += abs(floor - statisticsPerson.getStartFloor());
-        targetFloorAmount[floor - MIN_FLOOR] += 1;
-        totalWeight += person.getWeight();
-        amountOfPassengers++;
-    }
-
-    public void onPickPassengers(int floor, LocalDateTime time, List<Person> people) {
-        people.forEach(person -> initializePersonStatistics(person, floor, time));
-    }
-
-    public void onDropPassengers(int floor, LocalDateTime time, List<Person> people) {
-        people.forEach(person -> addStatisticsInfo(person, floor, time));
-    }
-}
+package com.natali;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.StrictMath.abs;
+
+public class StatisticProcessor {
+    //the series of an elevator in the time series store
+    public static final int RIDE_TIME = 0;
+    public static final int DISTANCE = 1;
+    public static final int WEIGHT = 2;
+    public static final int ELEVATOR_SERIES = 3;
+
+    private final int MIN_FLOOR;
+    //null if the values are not kept in time series
+    private final TimeSeriesStore store;
+    private final int elevatorSeries;
+    private final int floorSeries;
+
+    private final int[] startFloorAmount;
+    private final int[] targetFloorAmount;
+
+    @Getter
+    private int totalWeight;
+    @Getter
+    private long totalTime;
+    @Getter
+    private int amountOfPassengers;
+    @Getter
+    private int totalFloorsPassed;
+
+    public StatisticProcessor(int minFloor, int maxFloor) {
+        this(minFloor, maxFloor, null, 0, 0);
+    }
+
+    /**
+     * @param elevatorSeries the first of ELEVATOR_SERIES series of the elevator: ride time in ms, floors and
+     *                       weight of every delivered passenger
+     * @param floorSeries    the series of the lowest floor, a series a floor: wait time in ms of every
+     *                       boarded passenger
+     */
+    public StatisticProcessor(int minFloor, int maxFloor, TimeSeriesStore store, int elevatorSeries,
+                              int floorSeries) {
+        checkArgument(maxFloor > minFloor, "");
+        MIN_FLOOR = minFloor;
+        this.store = store;
+        this.elevatorSeries = elevatorSeries;
+        this.floorSeries = floorSeries;
+
+        startFloorAmount = new int[maxFloor - minFloor + 1];
+        targetFloorAmount = new int[maxFloor - minFloor + 1];
+    }
+
+    public int[] getStartFloorAmount() {
+        return Arrays.copyOf(startFloorAmount, startFloorAmount.length);
+    }
+
+    public int[] getTargetFloorAmount() {
+        return Arrays.copyOf(targetFloorAmount, targetFloorAmount.length);
+    }
+
+    public synchronized void onPickPassengers(int floor, long time, PassengerPool passengerPool, int[] passengers) {
+        startFloorAmount[floor - MIN_FLOOR] += passengers.length;
+        if (Objects.isNull(store)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int passenger : passengers) {
+            store.record(floorSeries + floor - MIN_FLOOR, now,
+                    (int) TimeUnit.NANOSECONDS.toMillis(time - passengerPool.getAppearanceTime(passenger)));
+        }
+    }
+
+    //time is System.nanoTime(), the boarding time of passengers is kept by the passenger pool
+    public synchronized void onDropPassengers(int floor, long time, PassengerPool passengerPool, int[] passengers) {
+        long now = System.currentTimeMillis();
+        int rideTime, distance;
+        for (int passenger : passengers) {
+            rideTime = (int) TimeUnit.NANOSECONDS.toMillis(time - passengerPool.getBoardingTime(passenger));
+            distance = abs(floor - passengerPool.getStartFloor(passenger));
+            totalTime += rideTime;
+            totalFloorsPassed += distance;
+            targetFloorAmount[floor - MIN_FLOOR] += 1;
+            totalWeight += passengerPool.getWeight(passenger);
+            amountOfPassengers++;
+            if (!Objects.isNull(store)) {
+                store.record(elevatorSeries + RIDE_TIME, now, rideTime);
+                store.record(elevatorSeries + DISTANCE, now, distance);
+                store.record(elevatorSeries + WEIGHT, now, passengerPool.getWeight(passenger));
+            }
+        }
+    }
+}
@@ -1,11 +0,0 @@
-package com.natali;
-
-import lombok.Value;
-
-import java.time.LocalDateTime;
-
-@Value
-public class StatisticsPerson {
-    LocalDateTime startTime;
-    int startFloor;
-}
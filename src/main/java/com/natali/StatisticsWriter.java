@@ -1,145 +1,234 @@
-package com.natali;
-
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
-
-@Slf4j
-public class StatisticsWriter implements Runnable {
-    private static final String WRONG_FLOOR_NUMBER = "Floor number must be in range from %i to %i";
-    private static final int TIME_TO_NEXT_STATISTICS_WRIGHT = 5000;
-    private static final int MILLISECONDS_IN_HOUR = 1000 * 60 * 60;
-    private static final int MILLISECONDS_IN_MINUTE = 1000 * 60;
-    private static final int MILLISECONDS_IN_SECOND = 1000;
-    private static final String BOARD = "--------------------------------| %d s |--------------------------------\n";
-    private static final String STATISTICS_PATTERN
-            = "Лифт #%d проехал %d этажей и перевез %d пассажиров\n" +
-            "Пассажиры провели в лифте всего %s, в среднем %d ms\n" +
-            "Перевезено: %d кг, средний вес пассажира: %d\n" +
-            "Лифт чаще всего забирал пассажиров с %d этажа, высаживал пассажиров на %d этаже\n\n";
-
-    //elevator - data
-    private final int elevatorsNumber;
-    private final Map<Integer, StatisticProcessor> dataProcessorsMap;
-    private final int MIN_FLOOR;
-    private final String FILE_NAME;
-
-    private volatile boolean isRunning;
-
-    public StatisticsWriter(int minFloor, int maxFloor, String file_name, int elevatorsNumber) {
-        checkArgument(maxFloor > minFloor, "");
-        MIN_FLOOR = minFloor;
-        checkNotNull(file_name, "File name must not be null");
-        checkArgument(!file_name.isEmpty(), WRONG_FLOOR_NUMBER, minFloor, maxFloor);
-        FILE_NAME = file_name;
-        this.elevatorsNumber = elevatorsNumber;
-        isRunning = true;
-        dataProcessorsMap = new ConcurrentHashMap<>();
-        for (int i = 1; i <= elevatorsNumber; i++) {
-            dataProcessorsMap.put(i, new StatisticProcessor(minFloor, maxFloor));
-        }
-    }
-
-    public StatisticProcessor getDataProcessor(int id) {
-        return dataProcessorsMap.get(id);
-    }
-
-    private String getStringPeriod(long period) {
-        long hours = period / MILLISECONDS_IN_HOUR;
-        period -= hours * MILLISECONDS_IN_HOUR;
-        long minutes = period / MILLISECONDS_IN_MINUTE;
-        period -= minutes * MILLISECONDS_IN_MINUTE;
-        long seconds = period / MILLISECONDS_IN_SECOND;
-        period -= seconds * MILLISECONDS_IN_SECOND;
-        return String.format("%d ч %d мин %d с %d мс", hours, minutes, seconds, period);
-    }
-
-    private int getMostPopularFloor(int[] floors) {
-        int max = -1;
-        int floorNumber = 0;
-        for (int i = 0; i < floors.length; i++) {
-            if (floors[i] > max) {
-                max = floors[i];
-                floorNumber = i;
-            }
-        }
-        return floorNumber;
-    }
-
-    private void writeStatistics(int timestamp) {
-        FileWriter fileWriter;
-        log.info("Writing statistics");
-        try {
-            fileWriter = new FileWriter(FILE_NAME, true);
-        } catch (IOException e) {
-            isRunning = false;
-            log.error("Problems with statistics: {}", e.getMessage());
-            return;
-        }
-        StatisticProcessor dataProcessor;
-        long totalTime;
-        String totalTimeInElevator;
-        int totalWeight, totalPassengers;
-        int[] startFloors, targetFloors;
-        PrintWriter printWriter = new PrintWriter(fileWriter);
-        printWriter.printf(BOARD, timestamp);
-        for (int i = 1; i <= elevatorsNumber; i++) {
-            dataProcessor = dataProcessorsMap.get(i);
-            synchronized (dataProcessor) {
-                totalTime = dataProcessor.getTotalTime();
-                totalTimeInElevator = getStringPeriod(totalTime);
-                totalPassengers = dataProcessor.getAmountOfPassengers();
-                if (totalPassengers == 0) {
-                    totalPassengers = 1;
-                }
-                totalWeight = dataProcessor.getTotalWeight();
-                startFloors = dataProcessor.getStartFloorAmount();
-                targetFloors = dataProcessor.getTargetFloorAmount();
-            }
-
-            printWriter.printf(STATISTICS_PATTERN,
-                    i, dataProcessor.getTotalFloorsPassed(), dataProcessor.getAmountOfPassengers(),
-                    totalTimeInElevator, totalTime / totalPassengers,
-                    totalWeight, totalWeight / totalPassengers,
-                    getMostPopularFloor(startFloors) + MIN_FLOOR, getMostPopularFloor(targetFloors) + MIN_FLOOR);
-        }
-        printWriter.close();
-        try {
-            fileWriter.close();
-        } catch (IOException e) {
-            isRunning = false;
-            log.error("Problems with statistics: {}", e.getMessage());
-        }
-    }
-
-    @Override
-    public void run() {
-        FileWriter fileWriter;
-        try {
-            fileWriter = new FileWriter(FILE_NAME);
-            fileWriter.close();
-        } catch (IOException e) {
-            isRunning = false;
-            log.error("Problems with statistics: {}", e.getMessage());
-            return;
-        }
-        int timestamp = 0;
-        while (isRunning) {
-            try {
-                Thread.sleep(TIME_TO_NEXT_STATISTICS_WRIGHT);
-            } catch (InterruptedException e) {
-                isRunning = false;
-                log.error("Thread #{} was interrupted", Thread.currentThread().getId());
-            }
-            timestamp += TIME_TO_NEXT_STATISTICS_WRIGHT / MILLISECONDS_IN_SECOND;
-            writeStatistics(timestamp);
-        }
-    }
-}
+package com.natali;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Every 5 seconds rewrites the report of the elevators and saves the time series store. The report keeps
+ * the totals since the start and the last minute, hour and day from the store, so neither file grows with time.
+ * Either file may be turned off, e.g. for a headless run with speeded up time.
+ */
+@Slf4j
+public class StatisticsWriter implements Runnable {
+    private static final int TIME_TO_NEXT_STATISTICS_WRIGHT = 5000;
+    private static final int MILLISECONDS_IN_HOUR = 1000 * 60 * 60;
+    private static final int MILLISECONDS_IN_MINUTE = 1000 * 60;
+    private static final int MILLISECONDS_IN_SECOND = 1000;
+    private static final String BOARD = "--------------------------------| %d s |--------------------------------\n";
+    private static final String STATISTICS_PATTERN
+            = "Лифт #%d проехал %d этажей и перевез %d пассажиров\n" +
+            "Пассажиры провели в лифте всего %s, в среднем %d ms\n" +
+            "Перевезено: %d кг, средний вес пассажира: %d\n" +
+            "Лифт чаще всего забирал пассажиров с %d этажа, высаживал пассажиров на %d этаже\n";
+    private static final String WINDOW_PATTERN
+            = "За последние %s: %d пассажиров, время в лифте в среднем %d ms, 90%% пассажиров до %d ms\n";
+    private static final String[] WINDOW_NAMES = {"минуту", "час", "сутки"};
+    private static final long[] WINDOWS = {MILLISECONDS_IN_MINUTE, MILLISECONDS_IN_HOUR, 24L * MILLISECONDS_IN_HOUR};
+
+    //elevator - data
+    private final int elevatorsNumber;
+    private final Map<Integer, StatisticProcessor> dataProcessorsMap;
+    private final int MIN_FLOOR;
+    private final int MAX_FLOOR;
+    //null if the report is not written
+    private final String FILE_NAME;
+    //null if the store is not saved
+    private final String storeFileName;
+    @Getter
+    private final TimeSeriesStore timeSeriesStore;
+
+    private volatile boolean isRunning;
+    //released when the writer is stopped, so it does not sleep out the interval
+    private final CountDownLatch stopSignal;
+
+    public StatisticsWriter(int minFloor, int maxFloor, String file_name, int elevatorsNumber) {
+        this(minFloor, maxFloor, file_name, elevatorsNumber, null);
+    }
+
+    /**
+     * @param file_name     the report file or null if the report is not written
+     * @param storeFileName the store is continued from this file if the file has the same layout,
+     *                      null if the store is kept in memory only
+     */
+    public StatisticsWriter(int minFloor, int maxFloor, String file_name, int elevatorsNumber, String storeFileName) {
+        checkArgument(maxFloor > minFloor, "");
+        MIN_FLOOR = minFloor;
+        MAX_FLOOR = maxFloor;
+        checkArgument(Objects.isNull(file_name) || !file_name.isEmpty(), "File name must not be empty");
+        FILE_NAME = file_name;
+        this.elevatorsNumber = elevatorsNumber;
+        isRunning = true;
+        stopSignal = new CountDownLatch(1);
+        this.storeFileName = storeFileName;
+        //the series of the elevators go first, then a series a floor
+        int floorSeries = elevatorsNumber * StatisticProcessor.ELEVATOR_SERIES;
+        timeSeriesStore = loadStore(storeFileName, floorSeries + maxFloor - minFloor + 1);
+        dataProcessorsMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= elevatorsNumber; i++) {
+            dataProcessorsMap.put(i, new StatisticProcessor(minFloor, maxFloor, timeSeriesStore,
+                    getElevatorSeries(i), floorSeries));
+        }
+    }
+
+    private static TimeSeriesStore loadStore(String storeFileName, int seriesNumber) {
+        if (Objects.isNull(storeFileName) || !new File(storeFileName).exists()) {
+            return new TimeSeriesStore(seriesNumber);
+        }
+        try {
+            return TimeSeriesStore.load(storeFileName, seriesNumber);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Impossible to continue statistics from {}, it is started anew: {}", storeFileName, e.getMessage());
+            return new TimeSeriesStore(seriesNumber);
+        }
+    }
+
+    //the first series of the elevator in the store, see StatisticProcessor
+    public static int getElevatorSeries(int id) {
+        return (id - 1) * StatisticProcessor.ELEVATOR_SERIES;
+    }
+
+    //elevators added while the simulation runs are counted in the report, the store has no series for them
+    public StatisticProcessor getDataProcessor(int id) {
+        return dataProcessorsMap.computeIfAbsent(id, newId -> new StatisticProcessor(MIN_FLOOR, MAX_FLOOR));
+    }
+
+    private String getStringPeriod(long period) {
+        long hours = period / MILLISECONDS_IN_HOUR;
+        period -= hours * MILLISECONDS_IN_HOUR;
+        long minutes = period / MILLISECONDS_IN_MINUTE;
+        period -= minutes * MILLISECONDS_IN_MINUTE;
+        long seconds = period / MILLISECONDS_IN_SECOND;
+        period -= seconds * MILLISECONDS_IN_SECOND;
+        return String.format("%d ч %d мин %d с %d мс", hours, minutes, seconds, period);
+    }
+
+    private int getMostPopularFloor(int[] floors) {
+        int max = -1;
+        int floorNumber = 0;
+        for (int i = 0; i < floors.length; i++) {
+            if (floors[i] > max) {
+                max = floors[i];
+                floorNumber = i;
+            }
+        }
+        return floorNumber;
+    }
+
+    private void writeStatistics(int timestamp) {
+        if (!Objects.isNull(FILE_NAME)) {
+            writeReport(timestamp);
+        }
+        if (!Objects.isNull(storeFileName)) {
+            try {
+                timeSeriesStore.save(storeFileName);
+            } catch (IOException e) {
+                log.error("Impossible to save time series: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writeReport(int timestamp) {
+        FileWriter fileWriter;
+        log.info("Writing statistics");
+        try {
+            fileWriter = new FileWriter(FILE_NAME);
+        } catch (IOException e) {
+            isRunning = false;
+            log.error("Problems with statistics: {}", e.getMessage());
+            return;
+        }
+        StatisticProcessor dataProcessor;
+        long totalTime;
+        String totalTimeInElevator;
+        int totalWeight, totalPassengers;
+        int[] startFloors, targetFloors;
+        TimeSeriesStore.Aggregate rideTime;
+        long now = System.currentTimeMillis();
+        PrintWriter printWriter = new PrintWriter(fileWriter);
+        printWriter.printf(BOARD, timestamp);
+        for (int i : new TreeSet<>(dataProcessorsMap.keySet())) {
+            dataProcessor = dataProcessorsMap.get(i);
+            synchronized (dataProcessor) {
+                totalTime = dataProcessor.getTotalTime();
+                totalTimeInElevator = getStringPeriod(totalTime);
+                totalPassengers = dataProcessor.getAmountOfPassengers();
+                if (totalPassengers == 0) {
+                    totalPassengers = 1;
+                }
+                totalWeight = dataProcessor.getTotalWeight();
+                startFloors = dataProcessor.getStartFloorAmount();
+                targetFloors = dataProcessor.getTargetFloorAmount();
+            }
+
+            printWriter.printf(STATISTICS_PATTERN,
+                    i, dataProcessor.getTotalFloorsPassed(), dataProcessor.getAmountOfPassengers(),
+                    totalTimeInElevator, totalTime / totalPassengers,
+                    totalWeight, totalWeight / totalPassengers,
+                    getMostPopularFloor(startFloors) + MIN_FLOOR, getMostPopularFloor(targetFloors) + MIN_FLOOR);
+            for (int window = 0; window < WINDOWS.length && i <= elevatorsNumber; window++) {
+                rideTime = timeSeriesStore.query(getElevatorSeries(i) + StatisticProcessor.RIDE_TIME,
+                        now - WINDOWS[window], now + 1);
+                printWriter.printf(WINDOW_PATTERN, WINDOW_NAMES[window], rideTime.getCount(),
+                        Math.round(rideTime.getMean()), rideTime.getValueAtPercentile(90));
+            }
+            printWriter.println();
+        }
+        printWriter.close();
+        try {
+            fileWriter.close();
+        } catch (IOException e) {
+            isRunning = false;
+            log.error("Problems with statistics: {}", e.getMessage());
+        }
+    }
+
+    //a stopped writer wakes up at once, writes the last statistics and ends
+    public void setRunning(boolean running) {
+        isRunning = running;
+        if (!running) {
+            stopSignal.countDown();
+        }
+    }
+
+    @Override
+    public void run() {
+        FileWriter fileWriter;
+        if (Objects.isNull(FILE_NAME) && Objects.isNull(storeFileName)) {
+            return;
+        }
+        try {
+            if (!Objects.isNull(FILE_NAME)) {
+                fileWriter = new FileWriter(FILE_NAME);
+                fileWriter.close();
+            }
+        } catch (IOException e) {
+            isRunning = false;
+            log.error("Problems with statistics: {}", e.getMessage());
+            return;
+        }
+        int timestamp = 0;
+        while (isRunning) {
+            try {
+                stopSignal.await(TIME_TO_NEXT_STATISTICS_WRIGHT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                isRunning = false;
+                log.error("Thread #{} was interrupted", Thread.currentThread().getId());
+            }
+            timestamp += TIME_TO_NEXT_STATISTICS_WRIGHT / MILLISECONDS_IN_SECOND;
+            writeStatistics(timestamp);
+        }
+    }
+}
@@ -1,9 +1,13 @@
-package com.natali;
-
-import lombok.Value;
-
-@Value
-class StorageStructure {
-    int floor;
-    Direction direction;
+package com.natali;
+
+import lombok.Value;
+
+@Value
+class StorageStructure {
+    int zoneId;
+    int floor;
+    Direction direction;
+    //System.nanoTime() of the call and of the moment it was put into the waiting queue
+    long callTime;
+    long queueTime;
 }
\ No newline at end of file
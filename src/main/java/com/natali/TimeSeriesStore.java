@@ -0,0 +1,345 @@
+package com.natali;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Round-robin time series of a fixed size. Every series has tiers of slots: 5 s slots for the last 30 minutes,
+ * minute slots for the last 12 hours, hour slots for the last 30 days and day slots for the last year.
+ * A value is added to its slot in every tier, so an interval stays in the coarser tiers after the finer slots
+ * are reused. A slot keeps the count, sum, min and max of the values and a sketch of them for percentiles:
+ * the buckets of {@link Histogram} with two sub-buckets a power of two instead of eight, so a percentile from
+ * MIN_SKETCH_VALUE on is off by 50% at most. Values below MIN_SKETCH_VALUE share the first bucket, values from
+ * MAX_SKETCH_VALUE share the last one. The file of the store takes 148 bytes a slot, about 320 KB a series,
+ * its size depends only on the number of series. Times are in ms since the epoch, values are not negative.
+ * Every slot has a fixed place in the file, so a save after the first one writes only the slots changed since.
+ */
+public class TimeSeriesStore {
+    private static final int SKETCH_SUB_BUCKET_BITS = 1;
+    public static final int MIN_SKETCH_VALUE = 32;
+    //about 17 minutes for times in ms
+    public static final int MAX_SKETCH_VALUE = (1 << 20) - 1;
+    //the Histogram bucket which goes before the second sketch bucket
+    private static final int SKETCH_BUCKETS_OFFSET =
+            Histogram.bucketIndex(MIN_SKETCH_VALUE, SKETCH_SUB_BUCKET_BITS) - 1;
+    public static final int SKETCH_BUCKETS =
+            Histogram.bucketIndex(MAX_SKETCH_VALUE, SKETCH_SUB_BUCKET_BITS) - SKETCH_BUCKETS_OFFSET + 1;
+    private static final int MAGIC = 0x54535333;
+    private static final long[] RESOLUTIONS = {5_000, 60_000, 3_600_000, 86_400_000};
+    private static final int[] SLOTS = {360, 720, 720, 365};
+    private static final int NO_INTERVAL = -1;
+    //interval, count, sum, min, max and the sketch
+    private static final int SLOT_BYTES = Integer.BYTES * 4 + Long.BYTES + Integer.BYTES * SKETCH_BUCKETS;
+    //magic, number of series, number of tiers, then resolution, slots and the last interval of every tier
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + (Long.BYTES + Integer.BYTES * 2) * RESOLUTIONS.length;
+
+    @Getter
+    private final int seriesNumber;
+    private final Tier[] tiers;
+    //the file which has all the slots but the dirty ones, null if the store has not been saved yet
+    private String savedFileName;
+    //one save at a time, the records go on while a save writes the file
+    private final Object saveLock = new Object();
+
+    private static class Tier {
+        private final long resolution;
+        private final int slots;
+        //series - slot, the interval of the slot is time / resolution
+        private final int[] intervals;
+        private final int[] counts;
+        private final long[] sums;
+        private final int[] mins;
+        private final int[] maxs;
+        //series - slot - bucket
+        private final int[] sketches;
+        //the latest interval of the tier, older than lastInterval - slots are overwritten
+        private int lastInterval;
+        //slots changed since the last save
+        private final BitSet dirty;
+
+        private Tier(long resolution, int slots, int seriesNumber) {
+            this.resolution = resolution;
+            this.slots = slots;
+            intervals = new int[seriesNumber * slots];
+            counts = new int[seriesNumber * slots];
+            sums = new long[seriesNumber * slots];
+            mins = new int[seriesNumber * slots];
+            maxs = new int[seriesNumber * slots];
+            sketches = new int[seriesNumber * slots * SKETCH_BUCKETS];
+            Arrays.fill(intervals, NO_INTERVAL);
+            lastInterval = NO_INTERVAL;
+            dirty = new BitSet(seriesNumber * slots);
+        }
+
+        private int getFirstInterval() {
+            return lastInterval - slots + 1;
+        }
+    }
+
+    /**
+     * Aggregate of the values of a window.
+     */
+    @Getter
+    public static class Aggregate {
+        private long count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max;
+        private final long[] sketch = new long[SKETCH_BUCKETS];
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        //the upper bound of the sketch bucket of the percentile, within min and max
+        public int getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < SKETCH_BUCKETS - 1; bucket++) {
+                seen += sketch[bucket];
+                if (seen >= rank) {
+                    return (int) Math.max(min, Math.min(max, Histogram.bucketLowerBound(
+                            bucket + 1 + SKETCH_BUCKETS_OFFSET, SKETCH_SUB_BUCKET_BITS) - 1));
+                }
+            }
+            return max;
+        }
+    }
+
+    public TimeSeriesStore(int seriesNumber) {
+        checkArgument(seriesNumber > 0, "Number of series must be positive");
+        this.seriesNumber = seriesNumber;
+        tiers = new Tier[RESOLUTIONS.length];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new Tier(RESOLUTIONS[i], SLOTS[i], seriesNumber);
+        }
+    }
+
+    private static int getBucket(int value) {
+        return Math.max(0, Histogram.bucketIndex(Math.min(value, MAX_SKETCH_VALUE), SKETCH_SUB_BUCKET_BITS)
+                - SKETCH_BUCKETS_OFFSET);
+    }
+
+    public synchronized void record(int series, long time, int value) {
+        checkArgument(series >= 0 && series < seriesNumber, "Unknown series: %s", series);
+        checkArgument(value >= 0, "Value must not be negative");
+        int interval, slot;
+        for (Tier tier : tiers) {
+            interval = (int) (time / tier.resolution);
+            if (interval < tier.getFirstInterval()) {
+                continue;
+            }
+            slot = series * tier.slots + interval % tier.slots;
+            //the slot of an old interval is reused
+            if (tier.intervals[slot] != interval) {
+                tier.intervals[slot] = interval;
+                tier.counts[slot] = 0;
+                tier.sums[slot] = 0;
+                tier.mins[slot] = value;
+                tier.maxs[slot] = value;
+                Arrays.fill(tier.sketches, slot * SKETCH_BUCKETS, (slot + 1) * SKETCH_BUCKETS, 0);
+            }
+            tier.counts[slot]++;
+            tier.sums[slot] += value;
+            tier.mins[slot] = Math.min(tier.mins[slot], value);
+            tier.maxs[slot] = Math.max(tier.maxs[slot], value);
+            tier.sketches[slot * SKETCH_BUCKETS + getBucket(value)]++;
+            tier.lastInterval = Math.max(tier.lastInterval, interval);
+            tier.dirty.set(slot);
+        }
+    }
+
+    /**
+     * Values of the window [from, to) from the finest tier which still keeps the start of the window,
+     * a coarse tier adds the whole slots the window touches.
+     */
+    public synchronized Aggregate query(int series, long from, long to) {
+        checkArgument(series >= 0 && series < seriesNumber, "Unknown series: %s", series);
+        checkArgument(from < to, "Window is empty");
+        Tier tier = tiers[tiers.length - 1];
+        for (Tier candidate : tiers) {
+            if (from / candidate.resolution >= candidate.getFirstInterval()) {
+                tier = candidate;
+                break;
+            }
+        }
+        Aggregate aggregate = new Aggregate();
+        int first = (int) Math.max(from / tier.resolution, tier.getFirstInterval());
+        int last = (int) Math.min((to - 1) / tier.resolution, tier.lastInterval);
+        int slot;
+        for (int interval = Math.max(first, 0); interval <= last; interval++) {
+            slot = series * tier.slots + interval % tier.slots;
+            if (tier.intervals[slot] != interval) {
+                continue;
+            }
+            aggregate.count += tier.counts[slot];
+            aggregate.sum += tier.sums[slot];
+            aggregate.min = Math.min(aggregate.min, tier.mins[slot]);
+            aggregate.max = Math.max(aggregate.max, tier.maxs[slot]);
+            for (int bucket = 0; bucket < SKETCH_BUCKETS; bucket++) {
+                aggregate.sketch[bucket] += tier.sketches[slot * SKETCH_BUCKETS + bucket];
+            }
+        }
+        if (aggregate.count == 0) {
+            aggregate.min = 0;
+        }
+        return aggregate;
+    }
+
+    private void writeHeader(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(seriesNumber);
+        output.writeInt(tiers.length);
+        for (Tier tier : tiers) {
+            output.writeLong(tier.resolution);
+            output.writeInt(tier.slots);
+            output.writeInt(tier.lastInterval);
+        }
+    }
+
+    private static void writeSlot(DataOutput output, Tier tier, int slot) throws IOException {
+        output.writeInt(tier.intervals[slot]);
+        output.writeInt(tier.counts[slot]);
+        output.writeLong(tier.sums[slot]);
+        output.writeInt(tier.mins[slot]);
+        output.writeInt(tier.maxs[slot]);
+        for (int bucket = 0; bucket < SKETCH_BUCKETS; bucket++) {
+            output.writeInt(tier.sketches[slot * SKETCH_BUCKETS + bucket]);
+        }
+    }
+
+    private static void readSlot(DataInput input, Tier tier, int slot) throws IOException {
+        tier.intervals[slot] = input.readInt();
+        tier.counts[slot] = input.readInt();
+        tier.sums[slot] = input.readLong();
+        tier.mins[slot] = input.readInt();
+        tier.maxs[slot] = input.readInt();
+        for (int bucket = 0; bucket < SKETCH_BUCKETS; bucket++) {
+            tier.sketches[slot * SKETCH_BUCKETS + bucket] = input.readInt();
+        }
+    }
+
+    /**
+     * The first save to a file writes the whole store to a temporary file and replaces the file at once,
+     * the next saves to the same file write the changed slots and the header in place. The slots are copied
+     * under the lock of the store and written to the file outside it, so a save does not hold up the records.
+     */
+    public void save(String fileName) throws IOException {
+        synchronized (saveLock) {
+            boolean fileExists = Files.exists(Paths.get(fileName));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            boolean inPlace;
+            long[] slotOffsets = null;
+            synchronized (this) {
+                inPlace = fileExists && fileName.equals(savedFileName);
+                writeHeader(output);
+                if (inPlace) {
+                    slotOffsets = writeDirtySlots(output);
+                } else {
+                    writeAllSlots(output);
+                }
+                for (Tier tier : tiers) {
+                    tier.dirty.clear();
+                }
+                //a failed write leaves the file behind the cleared dirty slots, so the next save writes it all
+                savedFileName = null;
+            }
+            if (inPlace) {
+                saveSlots(fileName, bytes.toByteArray(), slotOffsets);
+            } else {
+                saveAll(fileName, bytes.toByteArray());
+            }
+            synchronized (this) {
+                savedFileName = fileName;
+            }
+        }
+    }
+
+    private void writeAllSlots(DataOutput output) throws IOException {
+        for (Tier tier : tiers) {
+            for (int slot = 0; slot < tier.intervals.length; slot++) {
+                writeSlot(output, tier, slot);
+            }
+        }
+    }
+
+    //returns the file offsets of the written slots
+    private long[] writeDirtySlots(DataOutput output) throws IOException {
+        long[] slotOffsets = new long[Arrays.stream(tiers).mapToInt(tier -> tier.dirty.cardinality()).sum()];
+        int index = 0;
+        long tierOffset = HEADER_BYTES;
+        for (Tier tier : tiers) {
+            for (int slot = tier.dirty.nextSetBit(0); slot >= 0; slot = tier.dirty.nextSetBit(slot + 1)) {
+                writeSlot(output, tier, slot);
+                slotOffsets[index++] = tierOffset + (long) slot * SLOT_BYTES;
+            }
+            tierOffset += (long) tier.intervals.length * SLOT_BYTES;
+        }
+        return slotOffsets;
+    }
+
+    private static void saveAll(String fileName, byte[] store) throws IOException {
+        Path file = Paths.get(fileName);
+        Path temporaryFile = Paths.get(fileName + ".tmp");
+        Files.write(temporaryFile, store);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //bytes are the header and then the slots
+    private static void saveSlots(String fileName, byte[] bytes, long[] slotOffsets) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            for (int index = 0; index < slotOffsets.length; index++) {
+                file.seek(slotOffsets[index]);
+                file.write(bytes, HEADER_BYTES + index * SLOT_BYTES, SLOT_BYTES);
+            }
+            //the last intervals go after the slots they cover
+            file.seek(0);
+            file.write(bytes, 0, HEADER_BYTES);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the file is not a store of the same layout
+     */
+    public static TimeSeriesStore load(String fileName, int seriesNumber) throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(seriesNumber);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            checkArgument(input.readInt() == MAGIC, "%s is not a time series store", fileName);
+            checkArgument(input.readInt() == seriesNumber && input.readInt() == store.tiers.length,
+                    "%s has another number of series", fileName);
+            for (Tier tier : store.tiers) {
+                checkArgument(input.readLong() == tier.resolution && input.readInt() == tier.slots,
+                        "%s has other tiers", fileName);
+                tier.lastInterval = input.readInt();
+            }
+            for (Tier tier : store.tiers) {
+                for (int slot = 0; slot < tier.intervals.length; slot++) {
+                    readSlot(input, tier, slot);
+                }
+            }
+        }
+        store.savedFileName = fileName;
+        return store;
+    }
+}
@@ -0,0 +1,35 @@
+package com.natali;
+
+import java.util.Random;
+
+/**
+ * Where people appear and where they go. The lobby is the lowest floor of the building.
+ */
+public enum TrafficProfile {
+    //people go between random floors
+    Uniform,
+    //most people come into the building and go up from the lobby
+    UpPeak,
+    //most people leave the building and go down to the lobby
+    DownPeak;
+
+    private static final double LOBBY_SHARE = 0.8;
+
+    private static int getRandomFloor(Random random, int minFloor, int maxFloor) {
+        return random.nextInt(maxFloor - minFloor + 1) + minFloor;
+    }
+
+    public int getStartFloor(Random random, int minFloor, int maxFloor) {
+        if (this == UpPeak && random.nextDouble() < LOBBY_SHARE) {
+            return minFloor;
+        }
+        return getRandomFloor(random, minFloor, maxFloor);
+    }
+
+    public int getTargetFloor(Random random, int minFloor, int maxFloor) {
+        if (this == DownPeak && random.nextDouble() < LOBBY_SHARE) {
+            return minFloor;
+        }
+        return getRandomFloor(random, minFloor, maxFloor);
+    }
+}
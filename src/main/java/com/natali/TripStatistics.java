@@ -0,0 +1,69 @@
+package com.natali;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Passenger trips of the whole building: how long people wait for an elevator and how long they ride.
+ * Times are in microseconds.
+ */
+@Getter
+public class TripStatistics {
+    private final LongAdder appeared;
+    private final LongAdder boarded;
+    private final LongAdder alighted;
+    private final Histogram waitTime;
+    private final Histogram rideTime;
+    private final PassengerPool passengerPool;
+
+    public TripStatistics(PassengerPool passengerPool) {
+        appeared = new LongAdder();
+        boarded = new LongAdder();
+        alighted = new LongAdder();
+        waitTime = new Histogram();
+        rideTime = new Histogram();
+        this.passengerPool = passengerPool;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    void onAppeared() {
+        appeared.increment();
+    }
+
+    void onBoarded(int[] passengers) {
+        long now = System.nanoTime();
+        boarded.add(passengers.length);
+        for (int passenger : passengers) {
+            waitTime.record(toMicros(now - passengerPool.getAppearanceTime(passenger)));
+        }
+    }
+
+    void onAlighted(int[] passengers) {
+        long now = System.nanoTime();
+        alighted.add(passengers.length);
+        for (int passenger : passengers) {
+            rideTime.record(toMicros(now - passengerPool.getBoardingTime(passenger)));
+        }
+    }
+
+    //every appearance, boarding and alighting of a person is an event of the simulation
+    public long getEventsNumber() {
+        return appeared.sum() + boarded.sum() + alighted.sum();
+    }
+
+    //people who appeared but have not reached the target floor yet
+    public long getUndelivered() {
+        return appeared.sum() - alighted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("appeared: %d, boarded: %d, alighted: %d%nwait, us: %s%nride, us: %s",
+                appeared.sum(), boarded.sum(), alighted.sum(), waitTime, rideTime);
+    }
+}
@@ -0,0 +1,108 @@
+package com.natali;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A group of elevators serving the same set of floors. Floors between served ones are passed
+ * without stops (express run), e.g. zone "-1,6..10" goes from the lobby straight to the 6 floor.
+ */
+public class Zone {
+    private static final String ZONES_SEPARATOR = ";";
+    private static final String ELEVATORS_SEPARATOR = ":";
+    private static final String FLOORS_SEPARATOR = ",";
+    private static final String RANGE_SEPARATOR = "..";
+    private static final String WRONG_ZONE = "Zone must be described as <floors>:<elevators>, e.g. -1,6..10:2, got %s";
+
+    @Getter
+    private final int id;
+    @Getter
+    private final int elevatorsNumber;
+    private final NavigableSet<Integer> floors;
+
+    public Zone(int id, int elevatorsNumber, NavigableSet<Integer> floors) {
+        checkNotNull(floors);
+        checkArgument(elevatorsNumber > 0, "Zone %s has no elevators", id);
+        checkArgument(floors.size() > 1, "Zone %s must serve at least 2 floors", id);
+        this.id = id;
+        this.elevatorsNumber = elevatorsNumber;
+        this.floors = Collections.unmodifiableNavigableSet(new TreeSet<>(floors));
+    }
+
+    public static List<Zone> singleZone(int minFloor, int maxFloor, int elevatorsNumber) {
+        NavigableSet<Integer> floors = new TreeSet<>();
+        for (int floor = minFloor; floor <= maxFloor; floor++) {
+            floors.add(floor);
+        }
+        return List.of(new Zone(0, elevatorsNumber, floors));
+    }
+
+    /**
+     * @param layout zones separated by ';', each zone is a list of floors and ranges followed by
+     *               the number of its elevators, e.g. "-1..5:2;-1,6..10:2"
+     */
+    public static List<Zone> parseLayout(String layout, int minFloor, int maxFloor) {
+        checkNotNull(layout);
+        List<Zone> zones = new ArrayList<>();
+        NavigableSet<Integer> servedFloors = new TreeSet<>();
+        for (String zoneDescription : layout.split(ZONES_SEPARATOR)) {
+            String[] parts = zoneDescription.trim().split(ELEVATORS_SEPARATOR);
+            checkArgument(parts.length == 2, WRONG_ZONE, zoneDescription);
+            NavigableSet<Integer> floors = parseFloors(parts[0], minFloor, maxFloor);
+            servedFloors.addAll(floors);
+            zones.add(new Zone(zones.size(), Integer.parseInt(parts[1].trim()), floors));
+        }
+        checkArgument(servedFloors.size() == maxFloor - minFloor + 1,
+                "Every floor from %s to %s must be served by a zone", minFloor, maxFloor);
+        return zones;
+    }
+
+    private static NavigableSet<Integer> parseFloors(String description, int minFloor, int maxFloor) {
+        NavigableSet<Integer> floors = new TreeSet<>();
+        int from, to;
+        for (String range : description.split(FLOORS_SEPARATOR)) {
+            range = range.trim();
+            int separator = range.indexOf(RANGE_SEPARATOR);
+            if (separator < 0) {
+                from = to = Integer.parseInt(range);
+            } else {
+                from = Integer.parseInt(range.substring(0, separator).trim());
+                to = Integer.parseInt(range.substring(separator + RANGE_SEPARATOR.length()).trim());
+            }
+            checkArgument(from >= minFloor && to <= maxFloor && from <= to,
+                    "Wrong floors %s, floors must be in range from %s to %s", range, minFloor, maxFloor);
+            for (int floor = from; floor <= to; floor++) {
+                floors.add(floor);
+            }
+        }
+        return floors;
+    }
+
+    public boolean serves(int floor) {
+        return floors.contains(floor);
+    }
+
+    public boolean serves(int startFloor, int targetFloor) {
+        return serves(startFloor) && serves(targetFloor);
+    }
+
+    public boolean hasSameFloors(Zone zone) {
+        return floors.equals(zone.floors);
+    }
+
+    public int getLowestFloor() {
+        return floors.first();
+    }
+
+    public int getHighestFloor() {
+        return floors.last();
+    }
+}
@@ -0,0 +1,7 @@
+package com.natali.command_interfaces;
+
+import com.natali.Direction;
+
+public interface CallDispatcher {
+    void dispatch(int floor, Direction direction);
+}
@@ -0,0 +1,10 @@
+package com.natali.command_interfaces;
+
+import com.natali.Direction;
+
+public interface FloorDemand {
+    int getQueuedWeight(int zoneId, int floor, Direction direction);
+
+    //weight of the person who boards first, 0 if nobody is waiting
+    int getFirstPersonWeight(int zoneId, int floor, Direction direction);
+}
@@ -1,5 +1,5 @@
-package com.natali.command_interfaces;
-
-public interface Notifier {
-    void notifyEmpty();
-}
+package com.natali.command_interfaces;
+
+public interface Notifier {
+    void notifyEmpty();
+}
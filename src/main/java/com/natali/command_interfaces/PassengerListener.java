@@ -0,0 +1,6 @@
+package com.natali.command_interfaces;
+
+public interface PassengerListener {
+    //handles of the passenger pool, they are released after the listener returns
+    void onDroppedOff(int floor, int[] passengers);
+}
@@ -1,10 +1,8 @@
-package com.natali.command_interfaces;
-
-import com.natali.Direction;
-import com.natali.Person;
-
-import java.util.List;
-
-public interface PeopleSupplier {
-    List<Person> get(int weight, int floor, Direction direction);
-}
+package com.natali.command_interfaces;
+
+import com.natali.Direction;
+
+public interface PeopleSupplier {
+    //handles of the passenger pool
+    int[] get(int weight, int floor, Direction direction);
+}
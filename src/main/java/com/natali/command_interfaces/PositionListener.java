@@ -0,0 +1,5 @@
+package com.natali.command_interfaces;
+
+public interface PositionListener {
+    void onPositionChanged();
+}
@@ -0,0 +1,150 @@
+package com.natali.dispatch_service;
+
+import com.natali.Direction;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Binary framing of the dispatch service, all numbers are big-endian.
+ * <pre>
+ * frame:        int length (of the rest of the frame), byte type, int request id, payload
+ * hall calls:   short count, count * (short zone, short floor, byte direction)
+ * car states:   no payload in a request,
+ *               short count, count * (int id, short zone, short floor, byte direction, int load) in a response
+ * assignments:  short count, count * int elevator id (or QUEUED, INVALID) in the order of the calls
+ * </pre>
+ * A client may send any number of frames without waiting for responses, responses of a connection
+ * come in the order of the requests.
+ */
+public final class DispatchProtocol {
+    public static final byte HALL_CALLS = 1;
+    public static final byte CAR_STATES = 2;
+    public static final byte ASSIGNMENTS = 3;
+
+    //the call is in the waiting queue of the controller, an elevator will be sent later
+    public static final int QUEUED = -1;
+    //no elevator serves the zone or the floor
+    public static final int INVALID = -2;
+
+    public static final int LENGTH_SIZE = Integer.BYTES;
+    public static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    public static final int MAX_FRAME_LENGTH = 1 << 16;
+    public static final int CALL_SIZE = Short.BYTES + Short.BYTES + Byte.BYTES;
+    public static final int CAR_STATE_SIZE = Integer.BYTES + Short.BYTES + Short.BYTES + Byte.BYTES + Integer.BYTES;
+    public static final int MAX_CALLS_IN_FRAME = (MAX_FRAME_LENGTH - HEADER_SIZE - Short.BYTES) / CALL_SIZE;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private DispatchProtocol() {
+    }
+
+    @Value
+    public static class HallCall {
+        int zoneId;
+        int floor;
+        Direction direction;
+    }
+
+    @Value
+    public static class CarState {
+        int id;
+        int zoneId;
+        int floor;
+        Direction direction;
+        int load;
+    }
+
+    private static ByteBuffer allocateFrame(byte type, int requestId, int payloadSize) {
+        int length = HEADER_SIZE + payloadSize;
+        checkArgument(length <= MAX_FRAME_LENGTH, "Frame is too long: %s", length);
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_SIZE + length);
+        frame.putInt(length).put(type).putInt(requestId);
+        return frame;
+    }
+
+    private static Direction toDirection(byte ordinal) {
+        checkArgument(ordinal >= 0 && ordinal < DIRECTIONS.length, "Unknown direction: %s", ordinal);
+        return DIRECTIONS[ordinal];
+    }
+
+    public static ByteBuffer encodeHallCalls(int requestId, List<HallCall> calls) {
+        checkArgument(calls.size() <= MAX_CALLS_IN_FRAME, "Too many calls in a frame: %s", calls.size());
+        ByteBuffer frame = allocateFrame(HALL_CALLS, requestId, Short.BYTES + calls.size() * CALL_SIZE);
+        frame.putShort((short) calls.size());
+        for (HallCall call : calls) {
+            frame.putShort((short) call.getZoneId())
+                    .putShort((short) call.getFloor())
+                    .put((byte) call.getDirection().ordinal());
+        }
+        return frame.flip();
+    }
+
+    public static ByteBuffer encodeCarStatesRequest(int requestId) {
+        return allocateFrame(CAR_STATES, requestId, 0).flip();
+    }
+
+    public static ByteBuffer encodeAssignments(int requestId, int[] elevatorIds) {
+        ByteBuffer frame = allocateFrame(ASSIGNMENTS, requestId, Short.BYTES + elevatorIds.length * Integer.BYTES);
+        frame.putShort((short) elevatorIds.length);
+        for (int id : elevatorIds) {
+            frame.putInt(id);
+        }
+        return frame.flip();
+    }
+
+    public static ByteBuffer encodeCarStates(int requestId, List<CarState> states) {
+        ByteBuffer frame = allocateFrame(CAR_STATES, requestId, Short.BYTES + states.size() * CAR_STATE_SIZE);
+        frame.putShort((short) states.size());
+        for (CarState state : states) {
+            frame.putInt(state.getId())
+                    .putShort((short) state.getZoneId())
+                    .putShort((short) state.getFloor())
+                    .put((byte) state.getDirection().ordinal())
+                    .putInt(state.getLoad());
+        }
+        return frame.flip();
+    }
+
+    /*
+     * Decoders read the payload of a frame, the buffer is positioned after the request id.
+     * A malformed payload throws IllegalArgumentException or BufferUnderflowException.
+     */
+
+    public static List<HallCall> decodeHallCalls(ByteBuffer payload) {
+        int count = Short.toUnsignedInt(payload.getShort());
+        List<HallCall> calls = new ArrayList<>(count);
+        int zoneId, floor;
+        for (int i = 0; i < count; i++) {
+            zoneId = payload.getShort();
+            floor = payload.getShort();
+            calls.add(new HallCall(zoneId, floor, toDirection(payload.get())));
+        }
+        return calls;
+    }
+
+    public static int[] decodeAssignments(ByteBuffer payload) {
+        int[] elevatorIds = new int[Short.toUnsignedInt(payload.getShort())];
+        for (int i = 0; i < elevatorIds.length; i++) {
+            elevatorIds[i] = payload.getInt();
+        }
+        return elevatorIds;
+    }
+
+    public static List<CarState> decodeCarStates(ByteBuffer payload) {
+        int count = Short.toUnsignedInt(payload.getShort());
+        List<CarState> states = new ArrayList<>(count);
+        int id, zoneId, floor;
+        for (int i = 0; i < count; i++) {
+            id = payload.getInt();
+            zoneId = payload.getShort();
+            floor = payload.getShort();
+            states.add(new CarState(id, zoneId, floor, toDirection(payload.get()), payload.getInt()));
+        }
+        return states;
+    }
+}
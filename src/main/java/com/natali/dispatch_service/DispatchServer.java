@@ -0,0 +1,360 @@
+package com.natali.dispatch_service;
+
+import com.natali.Controller;
+import com.natali.Direction;
+import com.natali.Elevator;
+import com.natali.Zone;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.natali.dispatch_service.DispatchProtocol.*;
+
+/**
+ * Dispatch service over TCP: hall calls of clients are passed to the controller, the elevators chosen
+ * by the controller are sent back. One selector thread does all the network I/O, frames are processed
+ * by one worker thread in the order they came, so a slow controller never blocks the selector and
+ * the responses of a connection keep the order of its requests. A connection is not read while it has
+ * MAX_OUTSTANDING_FRAMES frames queued or not answered yet, or while the queue of the worker is full,
+ * so a client which sends faster than the controller dispatches is slowed down by TCP.
+ */
+@Slf4j
+public class DispatchServer implements Closeable {
+    private static final int SHUTDOWN_TIMEOUT = 1000;
+    static final int WORKER_QUEUE_CAPACITY = 1024;
+    static final int MAX_OUTSTANDING_FRAMES = 64;
+
+    private final Controller controller;
+    private final Map<Integer, Zone> zones;
+    private final BlockingQueue<Runnable> workerQueue;
+    private final ThreadPoolExecutor worker;
+    //connections with new responses, the selector thread subscribes them for writing
+    private final Queue<Connection> pendingWrites;
+    //connections which are not read now
+    private final Set<SelectionKey> pausedKeys;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+
+    private volatile boolean isRunning;
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input;
+        private final Queue<ByteBuffer> output;
+        //frames given to the worker and not written back yet, owned by the selector thread
+        private int outstandingFrames;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            input = ByteBuffer.allocate(LENGTH_SIZE + MAX_FRAME_LENGTH);
+            output = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    //every zone serves all the floors between the lowest and the highest floor of its elevators
+    public DispatchServer(Controller controller) {
+        this(controller, getZones(controller));
+    }
+
+    public DispatchServer(Controller controller, List<Zone> zones) {
+        checkNotNull(controller);
+        checkNotNull(zones);
+        this.controller = controller;
+        this.zones = new HashMap<>();
+        zones.forEach(zone -> this.zones.put(zone.getId(), zone));
+        workerQueue = new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY);
+        worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, workerQueue,
+                runnable -> new Thread(runnable, "dispatch-service-worker"));
+        pendingWrites = new ConcurrentLinkedQueue<>();
+        pausedKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    private static List<Zone> getZones(Controller controller) {
+        checkNotNull(controller);
+        Map<Integer, int[]> zoneFloors = new HashMap<>();
+        for (Elevator elevator : controller.getElevators()) {
+            zoneFloors.merge(elevator.getZoneId(), new int[]{elevator.getMinFloor(), elevator.getMaxFloor()},
+                    (a, b) -> new int[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+        }
+        List<Zone> zones = new ArrayList<>();
+        zoneFloors.forEach((zoneId, floors) -> {
+            NavigableSet<Integer> servedFloors = new TreeSet<>();
+            for (int floor = floors[0]; floor <= floors[1]; floor++) {
+                servedFloors.add(floor);
+            }
+            zones.add(new Zone(zoneId, (int) controller.getElevators().stream()
+                    .filter(elevator -> elevator.getZoneId() == zoneId).count(), servedFloors));
+        });
+        return zones;
+    }
+
+    /**
+     * @param address port 0 means any free port, see {@link #getPort()}
+     */
+    public void start(InetSocketAddress address) throws IOException {
+        checkState(!isRunning, "The server is already running");
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        isRunning = true;
+        selectorThread = new Thread(this::selectLoop, "dispatch-service-selector");
+        selectorThread.start();
+        log.info("Dispatch service is listening on {}", serverChannel.getLocalAddress());
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(SHUTDOWN_TIMEOUT);
+            worker.shutdown();
+            worker.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        log.info("Dispatch service is stopped");
+    }
+
+    private void selectLoop() {
+        Iterator<SelectionKey> keys;
+        SelectionKey key;
+        while (isRunning) {
+            try {
+                selector.select();
+                subscribeForWriting();
+                keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        log.warn("Connection is closed: {}", e.getMessage());
+                        closeConnection(key);
+                    }
+                }
+                //written responses and the worker may have made room for the frames of paused connections
+                resumeReading();
+            } catch (IOException e) {
+                log.error("Dispatch service failed", e);
+                isRunning = false;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (Objects.isNull(channel)) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        log.info("Client {} is connected", channel.getRemoteAddress());
+    }
+
+    private void closeConnection(SelectionKey key) {
+        pausedKeys.remove(key);
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.warn("Impossible to close connection: {}", e.getMessage());
+        }
+    }
+
+    private void subscribeForWriting() {
+        Connection connection;
+        SelectionKey key;
+        while ((connection = pendingWrites.poll()) != null) {
+            key = connection.channel.keyFor(selector);
+            if (!Objects.isNull(key) && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private boolean canAccept(Connection connection) {
+        return connection.outstandingFrames < MAX_OUTSTANDING_FRAMES && workerQueue.remainingCapacity() > 0;
+    }
+
+    //the connection is read again when its responses are written or the worker takes frames from its queue
+    private void resumeReading() {
+        Connection connection;
+        for (SelectionKey key : new ArrayList<>(pausedKeys)) {
+            connection = (Connection) key.attachment();
+            if (!key.isValid()) {
+                pausedKeys.remove(key);
+            } else if (canAccept(connection)) {
+                pausedKeys.remove(key);
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                //the frames which were read before the pause
+                try {
+                    takeFrames(key, connection);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Connection is closed: {}", e.getMessage());
+                    closeConnection(key);
+                }
+            }
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.input) < 0) {
+            closeConnection(key);
+            return;
+        }
+        takeFrames(key, connection);
+    }
+
+    private void takeFrames(SelectionKey key, Connection connection) {
+        ByteBuffer input = connection.input;
+        input.flip();
+        int length;
+        //every complete frame goes to the worker, a partial frame waits for the rest of its bytes
+        while (input.remaining() >= LENGTH_SIZE) {
+            length = input.getInt(input.position());
+            if (length < HEADER_SIZE || length > MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("Wrong frame length: " + length);
+            }
+            if (input.remaining() < LENGTH_SIZE + length) {
+                break;
+            }
+            if (!canAccept(connection)) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                pausedKeys.add(key);
+                break;
+            }
+            input.position(input.position() + LENGTH_SIZE);
+            ByteBuffer frame = ByteBuffer.allocate(length);
+            frame.put(input.slice().limit(length)).flip();
+            input.position(input.position() + length);
+            connection.outstandingFrames++;
+            worker.execute(() -> process(connection, frame));
+        }
+        input.compact();
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer response;
+        while ((response = connection.output.peek()) != null) {
+            connection.channel.write(response);
+            if (response.hasRemaining()) {
+                return;
+            }
+            connection.output.poll();
+            connection.outstandingFrames--;
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        //a response could be added after the queue was found empty
+        if (!connection.output.isEmpty()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void process(Connection connection, ByteBuffer frame) {
+        byte type = frame.get();
+        int requestId = frame.getInt();
+        ByteBuffer response;
+        try {
+            switch (type) {
+                case HALL_CALLS:
+                    response = encodeAssignments(requestId, dispatch(decodeHallCalls(frame)));
+                    break;
+                case CAR_STATES:
+                    response = encodeCarStates(requestId, getCarStates());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown frame type: " + type);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Request {} is malformed, connection is closed: {}", requestId, e.getMessage());
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (!Objects.isNull(key)) {
+                closeConnection(key);
+            }
+            return;
+        }
+        connection.output.add(response);
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    //floors of the express run of a zone are not served
+    private boolean isServed(HallCall call) {
+        Zone zone = zones.get(call.getZoneId());
+        return !Objects.isNull(zone) && zone.serves(call.getFloor()) && call.getDirection() != Direction.Idle;
+    }
+
+    private int[] dispatch(List<HallCall> calls) {
+        int[] elevatorIds = new int[calls.size()];
+        HallCall call;
+        for (int i = 0; i < calls.size(); i++) {
+            call = calls.get(i);
+            elevatorIds[i] = isServed(call)
+                    ? controller.addClient(call.getZoneId(), call.getDirection(), call.getFloor())
+                    : INVALID;
+        }
+        return elevatorIds;
+    }
+
+    private List<CarState> getCarStates() {
+        List<CarState> states = new ArrayList<>();
+        for (Elevator elevator : controller.getElevators()) {
+            states.add(new CarState(elevator.getId(), elevator.getZoneId(), elevator.getCurrentFloor(),
+                    elevator.getActualDirection(), elevator.getLoad()));
+        }
+        return states;
+    }
+}
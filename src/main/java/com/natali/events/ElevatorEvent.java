@@ -0,0 +1,20 @@
+package com.natali.events;
+
+import com.natali.Direction;
+import lombok.Value;
+
+@Value
+public class ElevatorEvent {
+    public static final int NO_ELEVATOR = 0;
+
+    EventType type;
+    //System.nanoTime()
+    long time;
+    int zoneId;
+    //NO_ELEVATOR for an arrival of a person
+    int elevatorId;
+    int floor;
+    Direction direction;
+    //people who appeared, boarded or alighted
+    int passengers;
+}
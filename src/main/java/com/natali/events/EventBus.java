@@ -0,0 +1,91 @@
+package com.natali.events;
+
+import com.natali.Direction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Publisher of elevator and passenger events. Every subscriber gets its own bounded buffer and
+ * requests events at its own pace; events are delivered by the threads of the bus, so a publishing
+ * elevator never waits for a subscriber. An event which does not fit into the buffer of a slow
+ * subscriber is dropped for that subscriber and counted. Nothing is allocated while nobody is subscribed.
+ * The bus has a fixed number of daemon threads, the subscribers take turns on them; close stops the threads.
+ */
+@Slf4j
+public class EventBus implements Flow.Publisher<ElevatorEvent>, AutoCloseable {
+    private static final int THREADS = 2;
+    private static final int SHUTDOWN_TIMEOUT = 1000;
+
+    private final ExecutorService executor;
+    private final SubmissionPublisher<ElevatorEvent> publisher;
+    private final LongAdder droppedEvents;
+
+    public EventBus() {
+        this(Flow.defaultBufferSize());
+    }
+
+    public EventBus(int bufferCapacity) {
+        checkArgument(bufferCapacity > 0, "Buffer capacity must be positive");
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "event-bus-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+        droppedEvents = new LongAdder();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ElevatorEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    public void publish(EventType type, int zoneId, int elevatorId, int floor, Direction direction, int passengers) {
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+        ElevatorEvent event = new ElevatorEvent(type, System.nanoTime(), zoneId, elevatorId, floor, direction,
+                passengers);
+        try {
+            publisher.offer(event, (subscriber, dropped) -> {
+                droppedEvents.increment();
+                return false;
+            });
+        } catch (IllegalStateException e) {
+            //the bus was closed after the check, the event is not needed any more
+            log.debug("Event {} is published after the bus was closed", type);
+        }
+    }
+
+    //events dropped for all subscribers together
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    //the buffered events are delivered before the threads are over, a stuck subscriber is interrupted
+    @Override
+    public void close() {
+        publisher.close();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+                executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            log.error("Thread {} was interrupted", Thread.currentThread().getId());
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
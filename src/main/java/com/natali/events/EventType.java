@@ -0,0 +1,16 @@
+package com.natali.events;
+
+public enum EventType {
+    //a person appeared on a floor
+    Arrival,
+    //the controller sent an elevator to a floor
+    Assignment,
+    //an elevator passed to the next floor
+    Move,
+    DoorOpen,
+    DoorClose,
+    Board,
+    Alight,
+    //an elevator has nothing to do
+    Idle
+}
@@ -0,0 +1,178 @@
+import com.natali.Controller;
+import com.natali.DispatchMetrics;
+import com.natali.Direction;
+import com.natali.DwellModel;
+import com.natali.Elevator;
+import com.natali.FlightTimeTable;
+import com.natali.PassengerPool;
+import com.natali.StatisticProcessor;
+import com.natali.command_interfaces.FloorDemand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads call elevators at once while the elevators board and deliver people,
+ * every person must be delivered to the target floor.
+ */
+class ControllerStressTest {
+    private static final int MAX_FLOOR = 30;
+    private static final int MIN_FLOOR = 1;
+    private static final int ELEVATORS_NUMBER = 16;
+    private static final int CALLER_THREADS = 8;
+    private static final int PERSONS_PER_THREAD = 500;
+    private static final int ANY_TIME = 1;
+    private static final int BEARING_CAPACITY = 600;
+    private static final int MIN_WEIGHT = 40;
+    private static final int MAX_WEIGHT = 120;
+    private static final int DELAY = 10;
+    private static final long DELIVERY_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+    private static final long SEED = 42;
+
+    private final PassengerPool passengerPool = new PassengerPool();
+    //waiting people of a floor and direction, the index is (floor - MIN_FLOOR) * 2 + direction
+    private final List<Deque<Integer>> floorQueues = new ArrayList<>();
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final AtomicInteger misdelivered = new AtomicInteger();
+    private final LongAdder calls = new LongAdder();
+    private Controller controller;
+
+    private Deque<Integer> getQueue(int floor, Direction direction) {
+        return floorQueues.get((floor - MIN_FLOOR) * 2 + (direction == Direction.Up ? 0 : 1));
+    }
+
+    //the same boarding rule as the environment uses
+    private int[] board(int weight, int floor, Direction direction) {
+        Deque<Integer> queue = getQueue(floor, direction);
+        List<Integer> passengers = new ArrayList<>();
+        int totalWeight = 0;
+        synchronized (queue) {
+            while (!queue.isEmpty() && passengerPool.getWeight(queue.peek()) + totalWeight <= weight) {
+                totalWeight += passengerPool.getWeight(queue.peek());
+                passengers.add(queue.poll());
+            }
+            if (!queue.isEmpty()) {
+                controller.addClientDelayed(0, direction, floor, DELAY);
+            }
+        }
+        return passengers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private final FloorDemand floorDemand = new FloorDemand() {
+        @Override
+        public int getQueuedWeight(int zoneId, int floor, Direction direction) {
+            Deque<Integer> queue = getQueue(floor, direction);
+            synchronized (queue) {
+                return queue.stream().mapToInt(passengerPool::getWeight).sum();
+            }
+        }
+
+        @Override
+        public int getFirstPersonWeight(int zoneId, int floor, Direction direction) {
+            Deque<Integer> queue = getQueue(floor, direction);
+            synchronized (queue) {
+                return queue.isEmpty() ? 0 : passengerPool.getWeight(queue.peek());
+            }
+        }
+    };
+
+    private Elevator makeElevator(int id, int floor) {
+        StatisticProcessor statisticProcessor = new StatisticProcessor(MIN_FLOOR, MAX_FLOOR);
+        Elevator elevator = new Elevator(ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, id, this::board,
+                (i) -> statisticProcessor, floor, BEARING_CAPACITY, 0, DwellModel.NONE,
+                FlightTimeTable.linear(ANY_TIME, MAX_FLOOR - MIN_FLOOR), passengerPool);
+        elevator.setFloorDemand(floorDemand);
+        elevator.setPassengerListener((droppedFloor, passengers) -> {
+            for (int passenger : passengers) {
+                if (passengerPool.getTargetFloor(passenger) != droppedFloor) {
+                    misdelivered.incrementAndGet();
+                }
+            }
+            delivered.addAndGet(passengers.length);
+        });
+        return elevator;
+    }
+
+    private void callElevators(long seed) {
+        Random random = new Random(seed);
+        int start, target, passenger;
+        Direction direction;
+        Deque<Integer> queue;
+        for (int i = 0; i < PERSONS_PER_THREAD; i++) {
+            start = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
+            do {
+                target = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
+            } while (target == start);
+            direction = target > start ? Direction.Up : Direction.Down;
+            passenger = passengerPool.allocate(random.nextInt(MAX_WEIGHT - MIN_WEIGHT) + MIN_WEIGHT,
+                    start, target, System.nanoTime());
+            queue = getQueue(start, direction);
+            synchronized (queue) {
+                queue.add(passenger);
+            }
+            //every person presses the button, so the calls of a floor race each other
+            controller.addClient(direction, start);
+            calls.increment();
+        }
+    }
+
+    @AfterEach
+    void stopController() {
+        if (controller != null) {
+            controller.setRunning(false);
+        }
+    }
+
+    @Test
+    void addClient_manyThreadsCallManyElevators_everyPersonIsDelivered() throws InterruptedException {
+        for (int i = 0; i < (MAX_FLOOR - MIN_FLOOR + 1) * 2; i++) {
+            floorQueues.add(new ArrayDeque<>());
+        }
+        List<Elevator> elevators = new ArrayList<>();
+        for (int id = 1; id <= ELEVATORS_NUMBER; id++) {
+            elevators.add(makeElevator(id, MIN_FLOOR + (id - 1) * (MAX_FLOOR - MIN_FLOOR) / ELEVATORS_NUMBER));
+        }
+        controller = new Controller(elevators, false);
+        controller.setFloorDemand(floorDemand);
+        controller.setRunning(true);
+        int persons = CALLER_THREADS * PERSONS_PER_THREAD;
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < CALLER_THREADS; i++) {
+            long seed = SEED + i;
+            callers.add(new Thread(() -> callElevators(seed), "caller-" + i));
+        }
+
+        long start = System.nanoTime();
+        callers.forEach(Thread::start);
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        long callTime = System.nanoTime() - start;
+        while ((delivered.get() < persons || passengerPool.size() > 0)
+                && System.nanoTime() - start < DELIVERY_TIMEOUT) {
+            Thread.sleep(DELAY);
+        }
+        long deliveryTime = System.nanoTime() - start;
+        //
+        DispatchMetrics metrics = controller.getDispatchMetrics();
+        System.out.printf("%d persons, %d calls from %d threads to %d elevators: %d calls/s, %d stranded, "
+                        + "p99 time to assignment %d us, all delivered in %d ms%n",
+                persons, calls.sum(), CALLER_THREADS, ELEVATORS_NUMBER,
+                calls.sum() * TimeUnit.SECONDS.toNanos(1) / Math.max(callTime, 1), persons - delivered.get(),
+                metrics.getTimeToAssignment().getValueAtPercentile(99),
+                TimeUnit.NANOSECONDS.toMillis(deliveryTime));
+        assertEquals(persons, delivered.get());
+        assertEquals(0, misdelivered.get());
+        assertEquals(0, passengerPool.size());
+    }
+}
@@ -1,135 +1,383 @@
-import com.natali.Controller;
-import com.natali.Direction;
-import com.natali.Elevator;
-import org.junit.jupiter.api.DisplayName;
-import org.junit.jupiter.api.Test;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import static org.junit.jupiter.api.Assertions.*;
-
-class ControllerTest {
-    private static final int MAX_FLOOR = 9;
-    private static final int MIN_FLOOR = 1;
-    private static final int ANY_TIME_TO_OPEN_THE_DOOR = 200;
-    private static final int ANY_TIME_TO_PASS_A_FLOOR = 2000;
-    private static final int BEARING_CAPACITY = 600;
-
-    private Elevator makeAnyElevatorOnTargetFloor(int id, int targetFloor) {
-        return new Elevator(ANY_TIME_TO_OPEN_THE_DOOR,
-                ANY_TIME_TO_OPEN_THE_DOOR,
-                ANY_TIME_TO_PASS_A_FLOOR,
-                MAX_FLOOR, MIN_FLOOR,
-                id, (w, f, direction) -> new ArrayList<>(),
-                (i) -> null, targetFloor, BEARING_CAPACITY);
-    }
-
-    @Test
-    void addClient_2elevators4and6floorsPersonAt5_elevatorAt6Move() {
-        //init
-        int expectedId = 2;
-        int actualId;
-
-        int startFloor = 5;
-        int floor4 = 4;
-        int floor6 = 6;
-        Direction anyDirection = Direction.Up;
-
-        Elevator elevator4floor = makeAnyElevatorOnTargetFloor(1, floor4);
-        Elevator elevator6floor = makeAnyElevatorOnTargetFloor(expectedId, floor6);
-
-        List<Elevator> elevators = new ArrayList<>(List.of(elevator4floor, elevator6floor));
-        Controller controller = new Controller(elevators, false);
-
-        //
-        actualId = controller.addClient(anyDirection, startFloor);
-        //
-        assertEquals(expectedId, actualId);
-    }
-
-    @Test
-    @DisplayName("Elevators 1E and 2E on the 4 and 6 floors. Persons P1 and P2 on the 1 and 9 floors;" +
-            "1E takes P1 and 2E takes P2")
-    void addClient_2personsOn1and9floors2elevatorsOn4and6_elevatorOn4takes1stOn6take2nd() {
-        int firstExpectedId = 1;
-        int firstActualId;
-        int secondExpectedId = 2;
-        int secondActualId;
-
-        int firstStartFloor = 1;
-        int secondStartFloor = 9;
-        Direction anyDirection = Direction.Up;
-
-        int floor4 = 4;
-        int floor6 = 6;
-        Elevator elevator4floor = makeAnyElevatorOnTargetFloor(firstExpectedId, floor4);
-        Elevator elevator6floor = makeAnyElevatorOnTargetFloor(secondExpectedId, floor6);
-
-        List<Elevator> elevators = new ArrayList<>(List.of(elevator4floor, elevator6floor));
-        Controller controller = new Controller(elevators, false);
-
-        //
-        firstActualId = controller.addClient(anyDirection, firstStartFloor);
-        secondActualId = controller.addClient(anyDirection, secondStartFloor);
-        //
-        assertEquals(firstExpectedId, firstActualId);
-        assertEquals(secondExpectedId, secondActualId);
-    }
-
-    private void moveElevatorDown(Controller controller, int currentFloor) {
-        controller.addClient(Direction.Down, currentFloor);
-    }
-
-    @Test
-    @DisplayName("Elevators A and B on the 3 and 8 floors. Elevator A is moving down, elevator B is idle. " +
-            "Persons P on the 4 floor; B takes P")
-    void addClient_1personOn4floor2elevatorsOn3and8_elevatorOn8takesPerson() {
-        int expectedId = 2;
-        int actualId;
-
-        int startFloor = 4;
-        Direction anyDirection = Direction.Up;
-        int floor3 = 3;
-        int floor8 = 8;
-
-        Elevator elevator3floor = makeAnyElevatorOnTargetFloor(1, floor3);
-        Elevator elevator8floor = makeAnyElevatorOnTargetFloor(expectedId, floor8);
-
-        List<Elevator> elevators = new ArrayList<>(List.of(elevator3floor, elevator8floor));
-        Controller controller = new Controller(elevators, false);
-
-        moveElevatorDown(controller, floor3);
-        assertEquals(Direction.Down, elevator3floor.getActualDirection());
-
-        //
-        actualId = controller.addClient(anyDirection, startFloor);
-        //
-        assertEquals(expectedId, actualId);
-        assertEquals(Direction.Down, elevator8floor.getActualDirection());
-    }
-
-    @Test
-    void addClient_2personOn4floor2elevatorsOn1_1elevatorTakes1Person2elevatorTakes2person() {
-        int actualId1;
-        int actualId2;
-
-        int firstId = 1;
-        int secondId = 2;
-
-        int startFloor = 4;
-        Direction direction1 = Direction.Up;
-        Direction direction2 = Direction.Down;
-        int floor1 = 1;
-        Elevator elevator3floor = makeAnyElevatorOnTargetFloor(firstId, floor1);
-        Elevator elevator8floor = makeAnyElevatorOnTargetFloor(secondId, floor1);
-
-        List<Elevator> elevators = new ArrayList<>(List.of(elevator3floor, elevator8floor));
-        Controller controller = new Controller(elevators, false);
-
-        actualId1 = controller.addClient(direction1, startFloor);
-        actualId2 = controller.addClient(direction2, startFloor);
-        //
-        assertNotEquals(actualId1, actualId2);
-    }
-}
\ No newline at end of file
+import com.natali.Controller;
+import com.natali.Direction;
+import com.natali.DispatchMetrics;
+import com.natali.DispatchPolicyTable;
+import com.natali.Elevator;
+import com.natali.command_interfaces.FloorDemand;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControllerTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME_TO_OPEN_THE_DOOR = 200;
+    private static final int ANY_TIME_TO_PASS_A_FLOOR = 2000;
+    private static final int BEARING_CAPACITY = 600;
+
+    private Elevator makeAnyElevatorOnTargetFloor(int id, int targetFloor) {
+        return new Elevator(ANY_TIME_TO_OPEN_THE_DOOR,
+                ANY_TIME_TO_OPEN_THE_DOOR,
+                ANY_TIME_TO_PASS_A_FLOOR,
+                MAX_FLOOR, MIN_FLOOR,
+                id, (w, f, direction) -> new int[0],
+                (i) -> null, targetFloor, BEARING_CAPACITY);
+    }
+
+    @Test
+    void addClient_2elevators4and6floorsPersonAt5_elevatorAt6Move() {
+        //init
+        int expectedId = 2;
+        int actualId;
+
+        int startFloor = 5;
+        int floor4 = 4;
+        int floor6 = 6;
+        Direction anyDirection = Direction.Up;
+
+        Elevator elevator4floor = makeAnyElevatorOnTargetFloor(1, floor4);
+        Elevator elevator6floor = makeAnyElevatorOnTargetFloor(expectedId, floor6);
+
+        List<Elevator> elevators = new ArrayList<>(List.of(elevator4floor, elevator6floor));
+        Controller controller = new Controller(elevators, false);
+
+        //
+        actualId = controller.addClient(anyDirection, startFloor);
+        //
+        assertEquals(expectedId, actualId);
+    }
+
+    @Test
+    @DisplayName("Elevators 1E and 2E on the 4 and 6 floors. Persons P1 and P2 on the 1 and 9 floors;" +
+            "1E takes P1 and 2E takes P2")
+    void addClient_2personsOn1and9floors2elevatorsOn4and6_elevatorOn4takes1stOn6take2nd() {
+        int firstExpectedId = 1;
+        int firstActualId;
+        int secondExpectedId = 2;
+        int secondActualId;
+
+        int firstStartFloor = 1;
+        int secondStartFloor = 9;
+        Direction anyDirection = Direction.Up;
+
+        int floor4 = 4;
+        int floor6 = 6;
+        Elevator elevator4floor = makeAnyElevatorOnTargetFloor(firstExpectedId, floor4);
+        Elevator elevator6floor = makeAnyElevatorOnTargetFloor(secondExpectedId, floor6);
+
+        List<Elevator> elevators = new ArrayList<>(List.of(elevator4floor, elevator6floor));
+        Controller controller = new Controller(elevators, false);
+
+        //
+        firstActualId = controller.addClient(anyDirection, firstStartFloor);
+        secondActualId = controller.addClient(anyDirection, secondStartFloor);
+        //
+        assertEquals(firstExpectedId, firstActualId);
+        assertEquals(secondExpectedId, secondActualId);
+    }
+
+    private void moveElevatorDown(Controller controller, int currentFloor) {
+        controller.addClient(Direction.Down, currentFloor);
+    }
+
+    @Test
+    @DisplayName("Elevators A and B on the 3 and 8 floors. Elevator A is moving down, elevator B is idle. " +
+            "Persons P on the 4 floor; B takes P")
+    void addClient_1personOn4floor2elevatorsOn3and8_elevatorOn8takesPerson() {
+        int expectedId = 2;
+        int actualId;
+
+        int startFloor = 4;
+        Direction anyDirection = Direction.Up;
+        int floor3 = 3;
+        int floor8 = 8;
+
+        Elevator elevator3floor = makeAnyElevatorOnTargetFloor(1, floor3);
+        Elevator elevator8floor = makeAnyElevatorOnTargetFloor(expectedId, floor8);
+
+        List<Elevator> elevators = new ArrayList<>(List.of(elevator3floor, elevator8floor));
+        Controller controller = new Controller(elevators, false);
+
+        moveElevatorDown(controller, floor3);
+        assertEquals(Direction.Down, elevator3floor.getActualDirection());
+
+        //
+        actualId = controller.addClient(anyDirection, startFloor);
+        //
+        assertEquals(expectedId, actualId);
+        assertEquals(Direction.Down, elevator8floor.getActualDirection());
+    }
+
+    @Test
+    void addClient_2personOn4floor2elevatorsOn1_1elevatorTakes1Person2elevatorTakes2person() {
+        int actualId1;
+        int actualId2;
+
+        int firstId = 1;
+        int secondId = 2;
+
+        int startFloor = 4;
+        Direction direction1 = Direction.Up;
+        Direction direction2 = Direction.Down;
+        int floor1 = 1;
+        Elevator elevator3floor = makeAnyElevatorOnTargetFloor(firstId, floor1);
+        Elevator elevator8floor = makeAnyElevatorOnTargetFloor(secondId, floor1);
+
+        List<Elevator> elevators = new ArrayList<>(List.of(elevator3floor, elevator8floor));
+        Controller controller = new Controller(elevators, false);
+
+        actualId1 = controller.addClient(direction1, startFloor);
+        actualId2 = controller.addClient(direction2, startFloor);
+        //
+        assertNotEquals(actualId1, actualId2);
+    }
+
+    @Test
+    void addClient_2personsOn4floor1elevatorOn1_dispatchMetricsCountAssignedAndQueuedCalls() {
+        Elevator elevator = makeAnyElevatorOnTargetFloor(1, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator)), false);
+
+        controller.addClient(Direction.Up, 4);
+        controller.addClient(Direction.Down, 4);
+        //
+        DispatchMetrics metrics = controller.getDispatchMetrics();
+        assertEquals(1, metrics.getAssignedCalls().sum());
+        assertEquals(1, metrics.getQueuedCalls().sum());
+        assertEquals(1, metrics.getTimeToAssignment().getCount());
+        assertEquals(2, metrics.getRetriesPerCall().getCount());
+        assertEquals(0, metrics.getServedFromWaitingQueue().sum());
+    }
+
+    @Test
+    void addClientDelayed_1personOn4floor1elevatorOn1_elevatorIsCalledAfterDelay() throws InterruptedException {
+        int delay = 50;
+        int timeout = 2000;
+        int step = 10;
+        Elevator elevator = makeAnyElevatorOnTargetFloor(1, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator)), false, 1, 1);
+
+        controller.addClientDelayed(0, Direction.Up, 4, delay);
+        assertEquals(Direction.Idle, elevator.getActualDirection());
+        for (int waited = 0; waited < timeout && elevator.getActualDirection() == Direction.Idle; waited += step) {
+            Thread.sleep(step);
+        }
+        controller.setRunning(false);
+        //
+        assertEquals(Direction.Up, elevator.getActualDirection());
+        assertEquals(1, controller.getDispatchMetrics().getAssignedCalls().sum());
+    }
+
+    @Test
+    @DisplayName("Elevator A of the zone 0 is on the 5 floor, elevator B of the zone 1 is on the 1 floor. " +
+            "Person P of the zone 1 is on the 6 floor; B takes P")
+    void addClient_2zones1personOn6floor_elevatorOfPersonZoneTakesPerson() {
+        int expectedId = 2;
+        int lowRiseZone = 0;
+        int highRiseZone = 1;
+        Elevator lowRiseElevator = new Elevator(ANY_TIME_TO_OPEN_THE_DOOR, ANY_TIME_TO_OPEN_THE_DOOR,
+                ANY_TIME_TO_PASS_A_FLOOR, 5, MIN_FLOOR, 1, (w, f, direction) -> new int[0],
+                (i) -> null, 5, BEARING_CAPACITY, lowRiseZone);
+        Elevator highRiseElevator = new Elevator(ANY_TIME_TO_OPEN_THE_DOOR, ANY_TIME_TO_OPEN_THE_DOOR,
+                ANY_TIME_TO_PASS_A_FLOOR, MAX_FLOOR, MIN_FLOOR, expectedId, (w, f, direction) -> new int[0],
+                (i) -> null, MIN_FLOOR, BEARING_CAPACITY, highRiseZone);
+        Controller controller = new Controller(new ArrayList<>(List.of(lowRiseElevator, highRiseElevator)), false);
+
+        //
+        int actualId = controller.addClient(highRiseZone, Direction.Down, 6);
+        //
+        assertEquals(expectedId, actualId);
+        assertEquals(Direction.Idle, lowRiseElevator.getActualDirection());
+    }
+
+    private FloorDemand makeFloorDemand(int queuedWeight, int firstPersonWeight) {
+        return new FloorDemand() {
+            @Override
+            public int getQueuedWeight(int zoneId, int floor, Direction direction) {
+                return queuedWeight;
+            }
+
+            @Override
+            public int getFirstPersonWeight(int zoneId, int floor, Direction direction) {
+                return firstPersonWeight;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Elevators A, B and C on the 1, 2 and 9 floors. People of 1000 kg are on the 3 floor; " +
+            "A and B both go there, C stays")
+    void addClient_crowdHeavierThanElevator_crowdIsSplitBetween2elevators() {
+        Elevator elevator1floor = makeAnyElevatorOnTargetFloor(1, 1);
+        Elevator elevator2floor = makeAnyElevatorOnTargetFloor(2, 2);
+        Elevator elevator9floor = makeAnyElevatorOnTargetFloor(3, 9);
+        Controller controller = new Controller(
+                new ArrayList<>(List.of(elevator1floor, elevator2floor, elevator9floor)), false);
+        controller.setFloorDemand(makeFloorDemand(BEARING_CAPACITY + 400, 80));
+
+        //
+        int actualId = controller.addClient(Direction.Up, 3);
+        //
+        assertEquals(2, actualId);
+        assertEquals(Direction.Up, elevator1floor.getActualDirection());
+        assertEquals(Direction.Up, elevator2floor.getActualDirection());
+        assertEquals(Direction.Idle, elevator9floor.getActualDirection());
+        assertEquals(1, controller.getDispatchMetrics().getSplitCalls().sum());
+    }
+
+    @Test
+    @DisplayName("Elevators A, B and C on the 1, 2 and 9 floors. B is called to the 4 floor for 300 kg, the queue " +
+            "grows to 1000 kg; only A is added, one more call of the queue calls nobody")
+    void addClient_crowdGrowsPastCalledElevator_oneMoreElevatorIsCalled() {
+        Elevator elevator1floor = makeAnyElevatorOnTargetFloor(1, 1);
+        Elevator elevator2floor = makeAnyElevatorOnTargetFloor(2, 2);
+        Elevator elevator9floor = makeAnyElevatorOnTargetFloor(3, 9);
+        Controller controller = new Controller(
+                new ArrayList<>(List.of(elevator1floor, elevator2floor, elevator9floor)), false);
+        controller.setFloorDemand(makeFloorDemand(300, 80));
+        int firstId = controller.addClient(Direction.Up, 4);
+        controller.setFloorDemand(makeFloorDemand(BEARING_CAPACITY + 400, 80));
+
+        //
+        int actualId = controller.addClient(Direction.Up, 4);
+        controller.addClient(Direction.Up, 4);
+        //
+        assertEquals(2, firstId);
+        assertEquals(1, actualId);
+        assertEquals(2 * BEARING_CAPACITY, controller.getAssignedCapacity(0, 4, Direction.Up));
+        assertEquals(0, controller.getAssignedCapacity(0, 4, Direction.Down));
+        assertEquals(Direction.Idle, elevator9floor.getActualDirection());
+        assertEquals(3, controller.getDispatchMetrics().getAssignedCalls().sum());
+        assertEquals(0, controller.getDispatchMetrics().getQueuedCalls().sum());
+    }
+
+    @Test
+    void addClient_firstPersonHeavierThanSpareCapacity_personIsWaiting() {
+        Elevator elevator = makeAnyElevatorOnTargetFloor(1, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator)), false);
+        controller.setFloorDemand(makeFloorDemand(BEARING_CAPACITY + 1, BEARING_CAPACITY + 1));
+
+        //
+        int actualId = controller.addClient(Direction.Up, 5);
+        //
+        assertEquals(-1, actualId);
+        assertEquals(Direction.Idle, elevator.getActualDirection());
+    }
+
+    @Test
+    void addClient_moreWaitingCallsThanUsedToFit_callerIsNotBlocked() {
+        Elevator elevator = makeAnyElevatorOnTargetFloor(1, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator)), false);
+        controller.setFloorDemand(makeFloorDemand(BEARING_CAPACITY + 1, BEARING_CAPACITY + 1));
+        int calls = 5000;
+
+        //
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < calls; i++) {
+                controller.addClient(Direction.Up, 5);
+            }
+        });
+        //
+        assertEquals(calls, controller.getDispatchMetrics().getQueuedCalls().sum());
+    }
+
+    @Test
+    void addClientParallel_dispatchQueueIsFull_callIsQueuedNotRunByCaller() throws InterruptedException {
+        Elevator elevator = makeAnyElevatorOnTargetFloor(1, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator)), false, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> dispatchingThreads = ConcurrentHashMap.newKeySet();
+        AtomicReference<String> callingThread = new AtomicReference<>();
+        controller.setFloorDemand(new FloorDemand() {
+            @Override
+            public int getQueuedWeight(int zoneId, int floor, Direction direction) {
+                dispatchingThreads.add(Thread.currentThread().getName());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 80;
+            }
+
+            @Override
+            public int getFirstPersonWeight(int zoneId, int floor, Direction direction) {
+                return 80;
+            }
+        });
+
+        //the first call holds the only dispatch thread, the second one fills the queue
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            callingThread.set(Thread.currentThread().getName());
+            for (int i = 0; i < 3; i++) {
+                controller.addClientParallel(0, Direction.Up, 5);
+            }
+        });
+        release.countDown();
+        controller.setRunning(false);
+        //
+        assertEquals(1, controller.getDispatchMetrics().getRejectedCalls().sum());
+        assertFalse(dispatchingThreads.contains(callingThread.get()));
+    }
+
+    @Test
+    void setRunning_falseWithIdleAndMovingElevators_elevatorThreadsAreOver() {
+        Elevator idleElevator = makeAnyElevatorOnTargetFloor(901, 1);
+        Elevator movingElevator = makeAnyElevatorOnTargetFloor(902, 1);
+        Controller controller = new Controller(new ArrayList<>(List.of(idleElevator, movingElevator)), true);
+        controller.addClient(Direction.Down, MAX_FLOOR);
+
+        //
+        controller.setRunning(false);
+        //
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().startsWith("elevator-90")));
+    }
+
+    @Test
+    void addClient_policyTablePenalizesIdleElevators_movingElevatorIsCalled() {
+        Elevator idleElevator = makeAnyElevatorOnTargetFloor(1, 4);
+        Elevator movingElevator = makeAnyElevatorOnTargetFloor(2, 2);
+        movingElevator.addFloor(9, Direction.Up);
+        Controller controller = new Controller(new ArrayList<>(List.of(idleElevator, movingElevator)), false);
+        controller.setDispatchPolicyTable(DispatchPolicyTable.of(5 * ANY_TIME_TO_PASS_A_FLOOR, 0, 0));
+
+        //
+        int actualId = controller.addClient(Direction.Up, 5);
+        //
+        assertEquals(2, actualId);
+        assertEquals(Direction.Idle, idleElevator.getActualDirection());
+    }
+
+    @Test
+    void removeElevator_nearestElevatorRemoved_otherElevatorIsCalled() {
+        Elevator elevator4floor = makeAnyElevatorOnTargetFloor(1, 4);
+        Elevator elevator6floor = makeAnyElevatorOnTargetFloor(2, 6);
+        Controller controller = new Controller(new ArrayList<>(List.of(elevator4floor, elevator6floor)), false);
+
+        controller.removeElevator(2);
+        //
+        assertTrue(elevator6floor.isRetiring());
+        assertEquals(List.of(elevator4floor), controller.getElevators());
+        assertEquals(1, controller.addClient(Direction.Up, 5));
+        assertThrows(IllegalStateException.class, () -> controller.removeElevator(1));
+    }
+
+    @Test
+    void addElevator_newElevatorOnCallFloor_newElevatorIsCalled() {
+        Controller controller = new Controller(new ArrayList<>(List.of(makeAnyElevatorOnTargetFloor(1, 1))), false);
+
+        controller.addElevator(makeAnyElevatorOnTargetFloor(2, 5));
+        //
+        assertEquals(2, controller.addClient(Direction.Up, 5));
+        assertThrows(IllegalArgumentException.class, () -> controller.addElevator(makeAnyElevatorOnTargetFloor(2, 3)));
+    }
+}
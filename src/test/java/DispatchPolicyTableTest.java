@@ -0,0 +1,64 @@
+import com.natali.Direction;
+import com.natali.DispatchPolicyTable;
+import com.natali.DispatchPolicyTable.Relation;
+import com.natali.Elevator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchPolicyTableTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME = 200;
+    private static final int BEARING_CAPACITY = 600;
+
+    private Elevator makeElevator(int floor) {
+        return new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, f, direction) -> new int[0], (i) -> null, floor, BEARING_CAPACITY);
+    }
+
+    @Test
+    void getRelation_elevatorGoesUp_callAheadIsOnTheWayOthersAreReversing() {
+        Elevator idleElevator = makeElevator(4);
+        Elevator movingElevator = makeElevator(4);
+
+        movingElevator.addFloor(8, Direction.Up);
+        //
+        assertEquals(Relation.Idle, DispatchPolicyTable.getRelation(idleElevator, Direction.Up, 6));
+        assertEquals(Relation.OnTheWay, DispatchPolicyTable.getRelation(movingElevator, Direction.Up, 6));
+        assertEquals(Relation.Reversing, DispatchPolicyTable.getRelation(movingElevator, Direction.Down, 6));
+        assertEquals(Relation.Reversing, DispatchPolicyTable.getRelation(movingElevator, Direction.Up, 2));
+    }
+
+    @Test
+    void getRelation_elevatorParkedForUp_callUpAheadIsOnTheWayOthersAreIdle() {
+        Elevator parkedElevator = makeElevator(4);
+
+        parkedElevator.park(4, Direction.Up);
+        //
+        assertEquals(Direction.Idle, parkedElevator.getActualDirection());
+        assertEquals(Relation.OnTheWay, DispatchPolicyTable.getRelation(parkedElevator, Direction.Up, 4));
+        assertEquals(Relation.OnTheWay, DispatchPolicyTable.getRelation(parkedElevator, Direction.Up, 6));
+        assertEquals(Relation.Idle, DispatchPolicyTable.getRelation(parkedElevator, Direction.Down, 6));
+        assertEquals(Relation.Idle, DispatchPolicyTable.getRelation(parkedElevator, Direction.Up, 2));
+        parkedElevator.addFloor(6, Direction.Down);
+        assertEquals(Direction.Idle, parkedElevator.getParkedDirection());
+    }
+
+    @Test
+    void load_savedTable_samePenalties() throws IOException {
+        DispatchPolicyTable table = DispatchPolicyTable.of(1000, 3000, 500);
+        Path file = Files.createTempFile("dispatch_policy", ".properties");
+
+        table.save(file.toString(), "test");
+        DispatchPolicyTable loaded = DispatchPolicyTable.load(file.toString());
+        Files.delete(file);
+        //
+        assertEquals(table.toString(), loaded.toString());
+        assertEquals(1000, loaded.getPenalty(makeElevator(4), Direction.Up, 6));
+    }
+}
@@ -0,0 +1,36 @@
+import com.natali.DispatchPolicyTrainer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchPolicyTrainerTest {
+
+    private Set<Thread> getSimulationThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("elevator-")
+                        || thread.getName().startsWith("people-generator"))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void run_twoRunsOfTwoTables_noSimulationThreadSurvives() throws IOException {
+        Path output = Files.createTempFile("dispatch_policy", ".properties");
+        Set<Thread> threadsBefore = getSimulationThreads();
+
+        //
+        int result = DispatchPolicyTrainer.run("elevators_environment.properties", "grid=0", "runs=2",
+                "duration=10", "speedup=20", "output=" + output);
+        Set<Thread> survivors = getSimulationThreads();
+        survivors.removeAll(threadsBefore);
+        Files.delete(output);
+        //
+        assertEquals(0, result);
+        assertTrue(survivors.isEmpty(), "Threads of the runs are alive: " + survivors);
+    }
+}
@@ -0,0 +1,177 @@
+import com.natali.Controller;
+import com.natali.Direction;
+import com.natali.Elevator;
+import com.natali.Zone;
+import com.natali.dispatch_service.DispatchProtocol;
+import com.natali.dispatch_service.DispatchProtocol.CarState;
+import com.natali.dispatch_service.DispatchProtocol.HallCall;
+import com.natali.dispatch_service.DispatchServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchServerTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME = 200;
+    private static final int BEARING_CAPACITY = 600;
+    private static final int FRAMES_NUMBER = 2000;
+    private static final int CALLS_IN_FRAME = 16;
+
+    private DispatchServer server;
+    private SocketChannel client;
+
+    private Elevator makeElevator(int id, int floor) {
+        return new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, id,
+                (w, f, direction) -> new int[0], (i) -> null, floor, BEARING_CAPACITY);
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Controller controller = new Controller(new ArrayList<>(List.of(makeElevator(1, 1), makeElevator(2, 8))),
+                false);
+        server = new DispatchServer(controller);
+        server.start(new InetSocketAddress("localhost", 0));
+        client = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private void send(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            client.write(frame);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            assertTrue(client.read(buffer) >= 0, "Connection is closed by the server");
+        }
+        buffer.flip();
+    }
+
+    //the response is positioned at the payload
+    private ByteBuffer receive(byte expectedType, int expectedRequestId) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(DispatchProtocol.LENGTH_SIZE);
+        readFully(length);
+        ByteBuffer response = ByteBuffer.allocate(length.getInt());
+        readFully(response);
+        assertEquals(expectedType, response.get());
+        assertEquals(expectedRequestId, response.getInt());
+        return response;
+    }
+
+    @Test
+    void hallCalls_batchOfCalls_nearestElevatorsAreAssigned() throws IOException {
+        send(DispatchProtocol.encodeHallCalls(7, List.of(
+                new HallCall(0, 2, Direction.Up),
+                new HallCall(0, 9, Direction.Down),
+                new HallCall(1, 5, Direction.Up),
+                new HallCall(0, 20, Direction.Up))));
+        //
+        int[] assignments = DispatchProtocol.decodeAssignments(receive(DispatchProtocol.ASSIGNMENTS, 7));
+        assertArrayEquals(new int[]{1, 2, DispatchProtocol.INVALID, DispatchProtocol.INVALID}, assignments);
+    }
+
+    @Test
+    void carStates_request_statesOfAllElevators() throws IOException {
+        send(DispatchProtocol.encodeHallCalls(1, List.of(new HallCall(0, 5, Direction.Up))));
+        send(DispatchProtocol.encodeCarStatesRequest(2));
+        //
+        receive(DispatchProtocol.ASSIGNMENTS, 1);
+        List<CarState> states = DispatchProtocol.decodeCarStates(receive(DispatchProtocol.CAR_STATES, 2));
+        assertEquals(List.of(new CarState(1, 0, 1, Direction.Idle, 0), new CarState(2, 0, 8, Direction.Down, 0)),
+                states);
+    }
+
+    @Test
+    void hallCalls_pipelinedFrames_allResponsesInRequestOrder() throws Exception {
+        List<HallCall> calls = new ArrayList<>();
+        for (int i = 0; i < CALLS_IN_FRAME; i++) {
+            calls.add(new HallCall(0, MIN_FLOOR + 1 + i % (MAX_FLOOR - MIN_FLOOR), Direction.Up));
+        }
+        //the client sends all frames without waiting for responses
+        Thread sender = new Thread(() -> {
+            try {
+                for (int requestId = 0; requestId < FRAMES_NUMBER; requestId++) {
+                    send(DispatchProtocol.encodeHallCalls(requestId, calls));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long start = System.nanoTime();
+        sender.start();
+        int[] assignments;
+        for (int requestId = 0; requestId < FRAMES_NUMBER; requestId++) {
+            assignments = DispatchProtocol.decodeAssignments(receive(DispatchProtocol.ASSIGNMENTS, requestId));
+            assertEquals(CALLS_IN_FRAME, assignments.length);
+            for (int id : assignments) {
+                assertTrue(id > 0);
+            }
+        }
+        long time = System.nanoTime() - start;
+        sender.join();
+        //
+        System.out.printf("%d calls in %d frames: %d calls/s%n", FRAMES_NUMBER * CALLS_IN_FRAME, FRAMES_NUMBER,
+                FRAMES_NUMBER * CALLS_IN_FRAME * 1_000_000_000L / time);
+    }
+
+    @Test
+    void hallCalls_burstWhileResponsesAreNotRead_allResponsesAfterReadingResumes() throws Exception {
+        List<HallCall> calls = List.of(new HallCall(0, 5, Direction.Up));
+        //far more frames than a connection may have outstanding, the server stops reading the client
+        Thread sender = new Thread(() -> {
+            try {
+                for (int requestId = 0; requestId < FRAMES_NUMBER; requestId++) {
+                    send(DispatchProtocol.encodeHallCalls(requestId, calls));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        sender.start();
+        Thread.sleep(ANY_TIME);
+        //
+        for (int requestId = 0; requestId < FRAMES_NUMBER; requestId++) {
+            assertEquals(1, DispatchProtocol.decodeAssignments(
+                    receive(DispatchProtocol.ASSIGNMENTS, requestId)).length);
+        }
+        sender.join();
+    }
+
+    @Test
+    void hallCalls_floorOfExpressRun_invalid() throws IOException {
+        Controller controller = new Controller(new ArrayList<>(List.of(makeElevator(3, 1))), false);
+        DispatchServer expressServer = new DispatchServer(controller,
+                List.of(new Zone(0, 1, new TreeSet<>(List.of(1, 5, 6, 7, 8, 9)))));
+        expressServer.start(new InetSocketAddress("localhost", 0));
+        try (SocketChannel expressClient = SocketChannel.open(
+                new InetSocketAddress("localhost", expressServer.getPort()))) {
+            client.close();
+            client = expressClient;
+            send(DispatchProtocol.encodeHallCalls(3, List.of(
+                    new HallCall(0, 3, Direction.Up),
+                    new HallCall(0, 6, Direction.Up))));
+            //
+            assertArrayEquals(new int[]{DispatchProtocol.INVALID, 3},
+                    DispatchProtocol.decodeAssignments(receive(DispatchProtocol.ASSIGNMENTS, 3)));
+        } finally {
+            expressServer.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import com.natali.Direction;
+import com.natali.Elevator;
+import com.natali.ElevatorIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class ElevatorIndexTest {
+    private static final int MAX_FLOOR = 100;
+    private static final int MIN_FLOOR = 1;
+    private static final int ELEVATORS_NUMBER = 500;
+    private static final int CALLS_NUMBER = 200_000;
+    private static final int ANY_TIME = 200;
+    private static final int BEARING_CAPACITY = 600;
+    private static final long SEED = 42;
+
+    private List<Elevator> makeElevators(Random random, ElevatorIndex index) {
+        List<Elevator> elevators = new ArrayList<>();
+        Elevator elevator;
+        int floor, target;
+        for (int id = 1; id <= ELEVATORS_NUMBER; id++) {
+            floor = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
+            elevator = new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, id,
+                    (w, f, direction) -> new int[0], (i) -> null, floor, BEARING_CAPACITY);
+            Elevator indexed = elevator;
+            elevator.setPositionListener(() -> index.update(indexed));
+            index.update(elevator);
+            //two thirds of the elevators are moving
+            target = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
+            if (random.nextInt(3) > 0 && target != floor) {
+                elevator.addFloor(target, target > floor ? Direction.Up : Direction.Down);
+            }
+            elevators.add(elevator);
+        }
+        return elevators;
+    }
+
+    //the least arrival time of the suitable elevators, -1 if there are none
+    private int findFastestTimeLinear(List<Elevator> elevators, int floor, Direction direction,
+                                      Predicate<Elevator> isSuitable) {
+        int fastestTime = -1;
+        int time;
+        for (Elevator elevator : elevators) {
+            if (!isSuitable.test(elevator)) {
+                continue;
+            }
+            time = elevator.getEstimatedArrivalTime(floor, direction);
+            if (fastestTime < 0 || time < fastestTime) {
+                fastestTime = time;
+            }
+        }
+        return fastestTime;
+    }
+
+    private ToIntFunction<Elevator> arrivalTime(int floor, Direction direction) {
+        return elevator -> elevator.getEstimatedArrivalTime(floor, direction);
+    }
+
+    private Predicate<Elevator> isSuitable(Direction direction) {
+        return elevator -> elevator.getActualDirection() == Direction.Idle
+                || elevator.getActualDirection() == direction;
+    }
+
+    @Test
+    void findFastest_randomElevators_sameArrivalTimeAsLinearScan() {
+        Random random = new Random(SEED);
+        ElevatorIndex index = new ElevatorIndex();
+        List<Elevator> elevators = makeElevators(random, index);
+        int floor;
+        Direction direction;
+        Elevator actual;
+        int expectedTime;
+
+        for (int i = 0; i < 1000; i++) {
+            floor = random.nextInt(MAX_FLOOR - MIN_FLOOR + 1) + MIN_FLOOR;
+            direction = random.nextBoolean() ? Direction.Up : Direction.Down;
+            expectedTime = findFastestTimeLinear(elevators, floor, direction, isSuitable(direction));
+            actual = index.findFastest(floor, isSuitable(direction), arrivalTime(floor, direction));
+            //
+            assertNotNull(actual);
+            assertEquals(expectedTime, actual.getEstimatedArrivalTime(floor, direction));
+            assertTrue(isSuitable(direction).test(actual));
+        }
+    }
+
+    @Test
+    void findFastest_elevatorMoved_indexFollowsElevator() {
+        ElevatorIndex index = new ElevatorIndex();
+        Elevator elevator = new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, f, direction) -> new int[0], (i) -> null, 10, BEARING_CAPACITY);
+        elevator.setPositionListener(() -> index.update(elevator));
+        index.update(elevator);
+
+        elevator.addFloor(20, Direction.Up);
+        //
+        assertNull(index.findFastest(10, e -> e.getActualDirection() == Direction.Idle,
+                arrivalTime(10, Direction.Up)));
+        assertEquals(elevator, index.findFastest(90, e -> e.getActualDirection() == Direction.Up,
+                arrivalTime(90, Direction.Up)));
+        index.remove(elevator);
+        assertNull(index.findFastest(10, e -> true, arrivalTime(10, Direction.Up)));
+    }
+
+    @Test
+    void benchmark_findFastestAgainstLinearScan() {
+        Random random = new Random(SEED);
+        ElevatorIndex index = new ElevatorIndex();
+        List<Elevator> elevators = makeElevators(random, index);
+        int[] floors = random.ints(CALLS_NUMBER, MIN_FLOOR, MAX_FLOOR + 1).toArray();
+        Predicate<Elevator> up = isSuitable(Direction.Up);
+        long checksum = 0;
+
+        //warm up both implementations before measuring
+        for (int floor : floors) {
+            checksum += findFastestTimeLinear(elevators, floor, Direction.Up, up)
+                    + index.findFastest(floor, up, arrivalTime(floor, Direction.Up)).getId();
+        }
+        long start = System.nanoTime();
+        for (int floor : floors) {
+            checksum += findFastestTimeLinear(elevators, floor, Direction.Up, up);
+        }
+        long linearTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int floor : floors) {
+            checksum += index.findFastest(floor, up, arrivalTime(floor, Direction.Up)).getId();
+        }
+        long indexTime = System.nanoTime() - start;
+
+        log.info("{} elevators, {} calls: linear scan {} ns/call, index {} ns/call (checksum {})",
+                ELEVATORS_NUMBER, CALLS_NUMBER, linearTime / CALLS_NUMBER, indexTime / CALLS_NUMBER, checksum);
+        assertTrue(checksum > 0);
+    }
+}
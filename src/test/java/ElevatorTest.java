@@ -0,0 +1,174 @@
+import com.natali.Direction;
+import com.natali.DwellModel;
+import com.natali.Elevator;
+import com.natali.ElevatorSettings;
+import com.natali.FlightTimeTable;
+import com.natali.StatisticProcessor;
+import com.natali.command_interfaces.FloorDemand;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElevatorTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME = 1;
+    private static final int BEARING_CAPACITY = 600;
+    private static final int TIMEOUT = 5;
+
+    private final List<Integer> servedFloors = new CopyOnWriteArrayList<>();
+    private final CountDownLatch idle = new CountDownLatch(1);
+    private final StatisticProcessor statisticProcessor = new StatisticProcessor(MIN_FLOOR, MAX_FLOOR);
+
+    private Elevator makeElevator(int firstPersonWeight) {
+        Elevator elevator = new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, floor, direction) -> {
+                    servedFloors.add(floor);
+                    return new int[0];
+                }, (i) -> statisticProcessor, MIN_FLOOR, BEARING_CAPACITY);
+        elevator.setNotifier(() -> {
+            if (elevator.getActualDirection() == Direction.Idle) {
+                idle.countDown();
+            }
+        });
+        elevator.setFloorDemand(new FloorDemand() {
+            @Override
+            public int getQueuedWeight(int zoneId, int floor, Direction direction) {
+                return firstPersonWeight;
+            }
+
+            @Override
+            public int getFirstPersonWeight(int zoneId, int floor, Direction direction) {
+                return firstPersonWeight;
+            }
+        });
+        return elevator;
+    }
+
+    @Test
+    void run_nobodyWaitsOnCalledFloor_elevatorPassesFloorWithoutOpeningDoor() throws InterruptedException {
+        Elevator elevator = makeElevator(0);
+
+        elevator.addFloor(5, Direction.Up);
+        new Thread(elevator).start();
+        //
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        elevator.setRunning(false);
+        assertEquals(5, elevator.getCurrentFloor());
+        assertTrue(servedFloors.isEmpty());
+    }
+
+    @Test
+    void run_firstPersonDoesNotFit_elevatorPassesFloorAndReturnsCall() throws InterruptedException {
+        Elevator elevator = makeElevator(BEARING_CAPACITY + 1);
+        List<Integer> returnedCalls = new CopyOnWriteArrayList<>();
+        elevator.setCallDispatcher((floor, direction) -> returnedCalls.add(floor));
+
+        elevator.addFloor(5, Direction.Up);
+        new Thread(elevator).start();
+        //
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        elevator.setRunning(false);
+        assertTrue(servedFloors.isEmpty());
+        assertEquals(List.of(5), returnedCalls);
+    }
+
+    @Test
+    void run_somebodyWaitsOnCalledFloor_elevatorStops() throws InterruptedException {
+        Elevator elevator = makeElevator(80);
+
+        elevator.addFloor(5, Direction.Up);
+        new Thread(elevator).start();
+        //
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        elevator.setRunning(false);
+        assertEquals(List.of(5), servedFloors);
+    }
+
+    @Test
+    void getEstimatedArrivalTime_idleElevator_flightTime() {
+        Elevator elevator = new Elevator(100, 100, 1000, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, floor, direction) -> new int[0], (i) -> statisticProcessor, 3, BEARING_CAPACITY);
+        //
+        assertEquals(4000, elevator.getEstimatedArrivalTime(7, Direction.Up));
+        assertEquals(2000, elevator.getEstimatedArrivalTime(1, Direction.Down));
+    }
+
+    @Test
+    void getEstimatedArrivalTime_stopAdded_stopsOnTheWayAreCounted() {
+        Elevator elevator = new Elevator(100, 100, 1000, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, floor, direction) -> new int[0], (i) -> statisticProcessor, 1, BEARING_CAPACITY);
+        int beforeStop = elevator.getEstimatedArrivalTime(8, Direction.Up);
+
+        elevator.addFloor(5, Direction.Up);
+        //
+        assertEquals(7000, beforeStop);
+        //4 floors to the stop, 200 ms of the door, 3 floors more
+        assertEquals(7200, elevator.getEstimatedArrivalTime(8, Direction.Up));
+        //the elevator goes down after the stop
+        assertEquals(6200, elevator.getEstimatedArrivalTime(3, Direction.Down));
+        assertEquals(2000, elevator.getEstimatedArrivalTime(3, Direction.Up));
+        //a call behind the elevator is taken after the turn
+        assertEquals(8200, elevator.getEstimatedArrivalTime(1, Direction.Up));
+    }
+
+    @Test
+    void setSettings_slowerCar_newArrivalTimeAndCapacity() {
+        Elevator elevator = new Elevator(100, 100, 1000, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, floor, direction) -> new int[0], (i) -> statisticProcessor, 3, BEARING_CAPACITY);
+        int before = elevator.getEstimatedArrivalTime(7, Direction.Up);
+
+        elevator.setSettings(new ElevatorSettings(100, 100, DwellModel.NONE,
+                FlightTimeTable.linear(2000, MAX_FLOOR - MIN_FLOOR), 300));
+        //
+        assertEquals(4000, before);
+        assertEquals(8000, elevator.getEstimatedArrivalTime(7, Direction.Up));
+        assertEquals(300, elevator.getSpareCapacity());
+    }
+
+    @Test
+    void retire_calledElevator_servesFloorAndStops() throws InterruptedException {
+        Elevator elevator = makeElevator(80);
+        Thread thread = new Thread(elevator);
+
+        elevator.addFloor(5, Direction.Up);
+        elevator.retire();
+        thread.start();
+        //
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(thread.isAlive());
+        assertFalse(elevator.isRunning());
+        assertEquals(List.of(5), servedFloors);
+    }
+
+    @Test
+    void getEstimatedArrivalTime_boardingWithoutStopsAhead_callsAheadCountTheStop() throws InterruptedException {
+        CountDownLatch boarding = new CountDownLatch(1);
+        List<Integer> arrivalTimes = new CopyOnWriteArrayList<>();
+        AtomicReference<Elevator> elevator = new AtomicReference<>();
+        //nobody boards, so the elevator goes up with no stops at all while the door is open
+        elevator.set(new Elevator(100, 100, 100, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, floor, direction) -> {
+                    arrivalTimes.add(elevator.get().getEstimatedArrivalTime(5, Direction.Down));
+                    arrivalTimes.add(elevator.get().getEstimatedArrivalTime(9, Direction.Down));
+                    boarding.countDown();
+                    return new int[0];
+                }, (i) -> statisticProcessor, MIN_FLOOR, BEARING_CAPACITY));
+        elevator.get().setNotifier(() -> {
+        });
+
+        elevator.get().addFloor(3, Direction.Up);
+        new Thread(elevator.get()).start();
+        //
+        assertTrue(boarding.await(TIMEOUT, TimeUnit.SECONDS));
+        elevator.get().setRunning(false);
+        //the stop on the 3 floor, then the flight up
+        assertEquals(List.of(400, 800), arrivalTimes);
+    }
+}
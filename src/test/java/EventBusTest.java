@@ -0,0 +1,128 @@
+import com.natali.Direction;
+import com.natali.Elevator;
+import com.natali.StatisticProcessor;
+import com.natali.events.ElevatorEvent;
+import com.natali.events.EventBus;
+import com.natali.events.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME = 1;
+    private static final int BEARING_CAPACITY = 600;
+    private static final int TIMEOUT = 5;
+
+    //requests events one by one until the idle event
+    private static class RecordingSubscriber implements Flow.Subscriber<ElevatorEvent> {
+        private final List<ElevatorEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch idle = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ElevatorEvent event) {
+            events.add(event);
+            if (event.getType() == EventType.Idle) {
+                idle.countDown();
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    void publish_elevatorCalledTo4floor_movesDoorsAndIdleInOrder() throws InterruptedException {
+        EventBus eventBus = new EventBus();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        eventBus.subscribe(subscriber);
+        Elevator elevator = new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, 1,
+                (w, f, direction) -> new int[0], (i) -> new StatisticProcessor(MIN_FLOOR, MAX_FLOOR),
+                MIN_FLOOR, BEARING_CAPACITY);
+        elevator.setNotifier(() -> {
+        });
+        elevator.setEventBus(eventBus);
+
+        elevator.addFloor(4, Direction.Up);
+        new Thread(elevator).start();
+        //
+        assertTrue(subscriber.idle.await(TIMEOUT, TimeUnit.SECONDS));
+        elevator.setRunning(false);
+        eventBus.close();
+        assertEquals(List.of(EventType.Move, EventType.Move, EventType.Move, EventType.DoorOpen, EventType.Alight,
+                EventType.Board, EventType.DoorClose, EventType.Idle),
+                subscriber.events.stream().map(ElevatorEvent::getType).collect(Collectors.toList()));
+        assertEquals(4, subscriber.events.get(2).getFloor());
+        assertEquals(0, eventBus.getDroppedEvents());
+    }
+
+    @Test
+    void publish_subscriberDoesNotRequest_eventsAreDroppedWithoutBlocking() {
+        EventBus eventBus = new EventBus(1);
+        eventBus.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+            }
+
+            @Override
+            public void onNext(ElevatorEvent item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            eventBus.publish(EventType.Move, 0, 1, i, Direction.Up, 0);
+        }
+        eventBus.close();
+        //
+        assertTrue(eventBus.getDroppedEvents() > 0);
+    }
+
+    @Test
+    void close_moreSubscribersThanThreads_allEventsDeliveredAndBusThreadsAreOver() {
+        EventBus eventBus = new EventBus();
+        List<RecordingSubscriber> subscribers = IntStream.range(0, 5)
+                .mapToObj(i -> new RecordingSubscriber())
+                .collect(Collectors.toList());
+        subscribers.forEach(eventBus::subscribe);
+
+        for (int floor = MIN_FLOOR; floor <= MAX_FLOOR; floor++) {
+            eventBus.publish(EventType.Move, 0, 1, floor, Direction.Up, 0);
+        }
+        //
+        eventBus.close();
+        //
+        subscribers.forEach(subscriber -> assertEquals(MAX_FLOOR - MIN_FLOOR + 1, subscriber.events.size()));
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().startsWith("event-bus-")));
+    }
+}
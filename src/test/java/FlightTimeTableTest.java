@@ -0,0 +1,30 @@
+import com.natali.FlightTimeTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightTimeTableTest {
+    private static final int MAX_DISTANCE = 40;
+
+    @Test
+    void getFlightTime_linearTable_timeIsProportionalToDistance() {
+        FlightTimeTable table = FlightTimeTable.linear(100, MAX_DISTANCE);
+        //
+        assertEquals(0, table.getFlightTime(0));
+        assertEquals(500, table.getFlightTime(5));
+        assertEquals(500, table.getFlightTime(-5));
+        assertEquals(100, table.getFloorPassTime(MAX_DISTANCE));
+    }
+
+    @Test
+    void getFloorPassTime_kinematicTable_longTripIsFasterPerFloor() {
+        FlightTimeTable table = FlightTimeTable.kinematic(3.5, 2.5, 1.0, 1.5, MAX_DISTANCE);
+        //
+        for (int floors = 1; floors < MAX_DISTANCE; floors++) {
+            assertTrue(table.getFlightTime(floors) < table.getFlightTime(floors + 1));
+            assertTrue(table.getFloorPassTime(floors) >= table.getFloorPassTime(floors + 1));
+        }
+        //the car cruises at the max speed on a long trip: 3.5 m / 2.5 m/s = 1.4 s per floor
+        assertEquals(1400, table.getFlightTime(MAX_DISTANCE) - table.getFlightTime(MAX_DISTANCE - 1));
+    }
+}
@@ -0,0 +1,54 @@
+import com.natali.Direction;
+import com.natali.Elevator;
+import com.natali.ParkingPolicy;
+import com.natali.Zone;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingPolicyTest {
+    private static final int MAX_FLOOR = 9;
+    private static final int MIN_FLOOR = 1;
+    private static final int ANY_TIME = 200;
+    private static final int BEARING_CAPACITY = 600;
+    private static final long HALF_LIFE = 60000;
+
+    private Elevator makeAnyElevatorOnFloor(int id, int floor) {
+        return new Elevator(ANY_TIME, ANY_TIME, ANY_TIME, MAX_FLOOR, MIN_FLOOR, id,
+                (w, f, direction) -> new int[0], (i) -> null, floor, BEARING_CAPACITY);
+    }
+
+    @Test
+    void chooseHomeFloor_peopleArriveOn1and5floors_elevatorsAreSpreadByArrivalRate() {
+        ParkingPolicy policy = new ParkingPolicy(Zone.singleZone(MIN_FLOOR, MAX_FLOOR, 3), Map.of(), HALF_LIFE);
+        for (int i = 0; i < 3; i++) {
+            policy.onArrival(0, 1, Direction.Up);
+        }
+        policy.onArrival(0, 5, Direction.Down);
+        policy.onArrival(0, 5, Direction.Down);
+
+        //
+        assertEquals(Integer.valueOf(1), policy.chooseHomeFloor(makeAnyElevatorOnFloor(1, 9)));
+        assertEquals(Integer.valueOf(5), policy.chooseHomeFloor(makeAnyElevatorOnFloor(2, 9)));
+        assertNull(policy.chooseHomeFloor(makeAnyElevatorOnFloor(3, 9)));
+        assertEquals(Direction.Down, policy.getPreferredDirection(0, 5));
+    }
+
+    @Test
+    void chooseHomeFloor_configuredHomeFloors_releasedFloorIsGivenAgain() {
+        ParkingPolicy policy = new ParkingPolicy(Zone.singleZone(MIN_FLOOR, MAX_FLOOR, 2),
+                ParkingPolicy.parseHomeFloors("1,7"), HALF_LIFE);
+        Elevator first = makeAnyElevatorOnFloor(1, 4);
+        Elevator second = makeAnyElevatorOnFloor(2, 4);
+
+        assertEquals(Integer.valueOf(1), policy.chooseHomeFloor(first));
+        assertEquals(Integer.valueOf(7), policy.chooseHomeFloor(second));
+        //the first elevator got a call, its home floor is free now
+        policy.release(first);
+        //
+        assertEquals(Integer.valueOf(1), policy.chooseHomeFloor(second));
+        assertEquals(Integer.valueOf(7), policy.chooseHomeFloor(first));
+    }
+}
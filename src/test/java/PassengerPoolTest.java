@@ -0,0 +1,49 @@
+import com.natali.Direction;
+import com.natali.PassengerPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassengerPoolTest {
+    private static final int PASSENGERS_NUMBER = 1_000_000;
+
+    @Test
+    void allocate_negativeFloors_fieldsAreKept() {
+        PassengerPool pool = new PassengerPool();
+        int passenger = pool.allocate(80, -1, -3, 42);
+        //
+        assertEquals(80, pool.getWeight(passenger));
+        assertEquals(-1, pool.getStartFloor(passenger));
+        assertEquals(-3, pool.getTargetFloor(passenger));
+        assertEquals(Direction.Down, pool.getDirection(passenger));
+        assertEquals(42, pool.getAppearanceTime(passenger));
+    }
+
+    @Test
+    void release_passengerDelivered_handleIsReused() {
+        PassengerPool pool = new PassengerPool();
+        int first = pool.allocate(80, 1, 5, 0);
+        pool.allocate(60, 2, 7, 0);
+        pool.release(first);
+        //
+        assertEquals(first, pool.allocate(70, 3, 1, 0));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    void allocate_millionPassengers_allFieldsAreKept() {
+        PassengerPool pool = new PassengerPool();
+        int[] passengers = new int[PASSENGERS_NUMBER];
+        for (int i = 0; i < PASSENGERS_NUMBER; i++) {
+            passengers[i] = pool.allocate(i % 150, i % 100, 100 - i % 100, i);
+        }
+        //
+        assertEquals(PASSENGERS_NUMBER, pool.size());
+        for (int i = 0; i < PASSENGERS_NUMBER; i++) {
+            assertEquals(i % 150, pool.getWeight(passengers[i]));
+            assertEquals(i % 100, pool.getStartFloor(passengers[i]));
+            assertEquals(100 - i % 100, pool.getTargetFloor(passengers[i]));
+            assertEquals(i, pool.getAppearanceTime(passengers[i]));
+        }
+    }
+}
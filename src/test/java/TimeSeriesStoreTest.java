@@ -0,0 +1,87 @@
+import com.natali.TimeSeriesStore;
+import com.natali.TimeSeriesStore.Aggregate;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesStoreTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    //header and 2165 slots of 148 bytes
+    private static final long MAX_FILE_BYTES_PER_SERIES = 330_000;
+
+    @Test
+    void query_oldWindowAfterSlotsAreReused_windowIsTakenFromCoarserTier() {
+        TimeSeriesStore store = new TimeSeriesStore(2);
+        store.record(0, START, 100);
+        store.record(0, START + 2 * SECOND, 300);
+        store.record(1, START, 7);
+
+        //5 s slots keep 30 minutes only
+        store.record(0, START + 2 * HOUR, 50);
+        Aggregate old = store.query(0, START, START + 5 * SECOND);
+        Aggregate recent = store.query(0, START + 2 * HOUR, START + 2 * HOUR + 5 * SECOND);
+        //
+        assertEquals(2, old.getCount());
+        assertEquals(400, old.getSum());
+        assertEquals(100, old.getMin());
+        assertEquals(300, old.getMax());
+        assertEquals(1, recent.getCount());
+        assertEquals(50, recent.getSum());
+        assertEquals(1, store.query(1, START, START + HOUR).getCount());
+    }
+
+    @Test
+    void getValueAtPercentile_manyValues_valueWithinSketchBucket() {
+        TimeSeriesStore store = new TimeSeriesStore(1);
+        for (int value = 1; value <= 1000; value++) {
+            store.record(0, START, value);
+        }
+        //
+        Aggregate aggregate = store.query(0, START, START + 1);
+        int median = aggregate.getValueAtPercentile(50);
+        int p90 = aggregate.getValueAtPercentile(90);
+        assertTrue(median >= 500 && median <= 500 * 1.5, "median: " + median);
+        assertTrue(p90 >= 900 && p90 <= 900 * 1.5, "p90: " + p90);
+        assertEquals(1000, aggregate.getValueAtPercentile(100));
+        assertEquals(500.5, aggregate.getMean());
+    }
+
+    @Test
+    void load_savedStore_sameValuesAndFixedFileSize() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(3);
+        Path file = Files.createTempFile("statistics", ".tss");
+        store.save(file.toString());
+        long emptySize = Files.size(file);
+
+        for (int i = 0; i < 10_000; i++) {
+            store.record(i % 3, START + i * SECOND, i);
+        }
+        store.save(file.toString());
+        TimeSeriesStore loaded = TimeSeriesStore.load(file.toString(), 3);
+        long size = Files.size(file);
+        Files.delete(file);
+        //
+        assertEquals(emptySize, size);
+        assertTrue(size <= 3 * MAX_FILE_BYTES_PER_SERIES, "file size: " + size);
+        for (int series = 0; series < 3; series++) {
+            assertEquals(store.query(series, START, START + 3 * HOUR).getSum(),
+                    loaded.query(series, START, START + 3 * HOUR).getSum());
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            Path otherFile = Files.createTempFile("statistics", ".tss");
+            try {
+                store.save(otherFile.toString());
+                TimeSeriesStore.load(otherFile.toString(), 4);
+            } finally {
+                Files.delete(otherFile);
+            }
+        });
+    }
+}
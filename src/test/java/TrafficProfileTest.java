@@ -0,0 +1,39 @@
+import com.natali.TrafficProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficProfileTest {
+    private static final int MAX_FLOOR = 10;
+    private static final int MIN_FLOOR = 1;
+    private static final int TRIPS_NUMBER = 10_000;
+
+    private int countLobbyFloors(TrafficProfile profile, boolean isStartFloor) {
+        Random random = new Random(42);
+        int count = 0;
+        int floor;
+        for (int i = 0; i < TRIPS_NUMBER; i++) {
+            floor = isStartFloor ? profile.getStartFloor(random, MIN_FLOOR, MAX_FLOOR)
+                    : profile.getTargetFloor(random, MIN_FLOOR, MAX_FLOOR);
+            assertTrue(floor >= MIN_FLOOR && floor <= MAX_FLOOR);
+            if (floor == MIN_FLOOR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    void getStartFloor_upPeak_mostPeopleStartInLobby() {
+        assertTrue(countLobbyFloors(TrafficProfile.UpPeak, true) > TRIPS_NUMBER * 3 / 4);
+        assertTrue(countLobbyFloors(TrafficProfile.UpPeak, false) < TRIPS_NUMBER / 5);
+    }
+
+    @Test
+    void getTargetFloor_downPeak_mostPeopleGoToLobby() {
+        assertTrue(countLobbyFloors(TrafficProfile.DownPeak, false) > TRIPS_NUMBER * 3 / 4);
+        assertTrue(countLobbyFloors(TrafficProfile.Uniform, false) < TRIPS_NUMBER / 5);
+    }
+}